@@ -0,0 +1,100 @@
+package com.warakorn.modblocker;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/** Synthetic rule sets, channel lists and payloads shared by the benchmarks. */
+final class BenchmarkData {
+
+    static final List<String> LOADERS = List.of("fabric", "forge", "quilt");
+
+    static final String[] VANILLA_CHANNELS = {"minecraft:brand", "minecraft:register"};
+
+    static final String[] FABRIC_CHANNELS = {
+            "minecraft:brand", "fabric:registry/sync", "fabric-screen-handler-api-v1:open_screen",
+            "sodium:config", "iris:shaders", "modmenu:update", "lithium:sync", "c:version"
+    };
+
+    static final String[] FORGE_CHANNELS = {
+            "minecraft:brand", "forge:handshake", "forge:login", "forge:play", "fml:handshake",
+            "jei:network", "create:main", "curios:main", "patchouli:main", "ftbteams:main",
+            "ftbquests:main", "ae2:main", "mekanism:mekanism", "thermal:general", "botania:main"
+    };
+
+    static final String[] CHEAT_CHANNELS = {"minecraft:brand", "meteor-client:main", "baritone:settings"};
+
+    private static final String[] REAL_MODS = {
+            "journeymap", "xaerominimap", "xaeroworldmap", "voxelmap", "xray", "wurst", "aristois", "impact",
+            "meteor", "bleachhack", "kami", "future", "rusherhack", "baritone", "autoclicker", "killaura",
+            "reach", "velocity", "nofall", "cheat", "hack", "hacked", "freecam", "crystalaura", "triggerbot"
+    };
+
+    private BenchmarkData() {
+    }
+
+    /** The shipped blocklist padded with made-up mod ids up to {@code size} entries. */
+    static List<String> blocklist(int size) {
+        List<String> rules = new ArrayList<>(size);
+        for (int i = 0; i < REAL_MODS.length && rules.size() < size; i++) {
+            rules.add(REAL_MODS[i]);
+        }
+        Random random = new Random(42);
+        while (rules.size() < size) {
+            StringBuilder name = new StringBuilder();
+            int length = 5 + random.nextInt(10);
+            for (int i = 0; i < length; i++) {
+                name.append((char) ('a' + random.nextInt(26)));
+            }
+            rules.add(name.toString());
+        }
+        return rules;
+    }
+
+    static String[] mixedChannels() {
+        List<String> channels = new ArrayList<>();
+        channels.addAll(List.of(VANILLA_CHANNELS));
+        channels.addAll(List.of(FABRIC_CHANNELS));
+        channels.addAll(List.of(FORGE_CHANNELS));
+        channels.addAll(List.of(CHEAT_CHANNELS));
+        return channels.toArray(new String[0]);
+    }
+
+    /** Payload of VarInt-prefixed mod ids (framed) or random printable bytes, about {@code size} bytes long. */
+    static byte[] payload(int size, boolean framed) {
+        Random random = new Random(size);
+        if (!framed) {
+            byte[] data = new byte[size];
+            for (int i = 0; i < size; i++) {
+                data[i] = (byte) (' ' + random.nextInt(95));
+            }
+            return data;
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(size + 16);
+        while (out.size() < size) {
+            String mod = FORGE_CHANNELS[random.nextInt(FORGE_CHANNELS.length)];
+            writeString(out, mod.substring(0, Math.min(mod.length(), Math.max(1, size - out.size() - 1))));
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] brandPayload(String brand) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeString(out, brand);
+        return out.toByteArray();
+    }
+
+    private static void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = bytes.length;
+        while ((length & ~0x7F) != 0) {
+            out.write((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        out.write(length);
+        out.write(bytes, 0, bytes.length);
+    }
+}
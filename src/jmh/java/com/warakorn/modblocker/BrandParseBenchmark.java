@@ -0,0 +1,43 @@
+package com.warakorn.modblocker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Decoding a minecraft:brand payload and checking it against the blocklist. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class BrandParseBenchmark {
+
+    @Param({"vanilla", "fabric", "forge", "Meteor Client 0.5.8"})
+    public String brand;
+
+    private RuleMatcher matcher;
+    private byte[] payload;
+
+    @Setup
+    public void setup() {
+        matcher = RuleMatcher.compile(BenchmarkData.LOADERS, BenchmarkData.blocklist(300));
+        payload = BenchmarkData.brandPayload(brand);
+    }
+
+    @Benchmark
+    public int parseAndMatch() {
+        String decoded = PayloadScanner.readString(payload, 256);
+        return decoded == null ? RuleMatcher.NO_MATCH : matcher.findBlocked(decoded);
+    }
+}
@@ -0,0 +1,74 @@
+package com.warakorn.modblocker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * checkModChannel-style matching of a mixed vanilla/Fabric/Forge/cheat
+ * channel list. {@code loopPerRule} is the old per-rule toLowerCase/contains
+ * loop, kept as a reference point.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class ChannelMatchBenchmark {
+
+    @Param({"30", "300", "3000"})
+    public int rules;
+
+    private RuleMatcher matcher;
+    private List<String> blocked;
+    private String[] channels;
+
+    @Setup
+    public void setup() {
+        blocked = BenchmarkData.blocklist(rules);
+        matcher = RuleMatcher.compile(BenchmarkData.LOADERS, blocked);
+        channels = BenchmarkData.mixedChannels();
+    }
+
+    @Benchmark
+    public void automaton(Blackhole blackhole) {
+        for (String channel : channels) {
+            blackhole.consume(matcher.matchChannel(channel));
+        }
+    }
+
+    @Benchmark
+    public void loopPerRule(Blackhole blackhole) {
+        for (String channel : channels) {
+            blackhole.consume(loopMatch(channel));
+        }
+    }
+
+    private String loopMatch(String channel) {
+        String lowerChannel = channel.toLowerCase();
+        for (String allowedLoader : BenchmarkData.LOADERS) {
+            if (lowerChannel.contains(allowedLoader.toLowerCase())) {
+                return allowedLoader;
+            }
+        }
+        for (String blockedMod : blocked) {
+            if (lowerChannel.contains(blockedMod.toLowerCase())) {
+                return blockedMod;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,87 @@
+package com.warakorn.modblocker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * One simulated join evaluated on the calling thread: channel registration
+ * diffing, the channel rules, the client check and a handshake payload. Every
+ * join uses the same client, so after the first one the client check is a
+ * fingerprint cache hit.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class JoinEvaluationBenchmark {
+
+    @Param({"vanilla", "fabric", "forge", "cheat"})
+    public String client;
+
+    @Param({"300"})
+    public int rules;
+
+    private DetectionLog log;
+    private DetectionEngine engine;
+    private List<String> channels;
+    private String brand;
+    private byte[] handshake;
+    private long joins;
+
+    @Setup
+    public void setup() {
+        log = new DetectionLog(new File("target/jmh-logs"), Logger.getAnonymousLogger(), 64);
+        log.configure(DetectionLog.Level.OFF, false, 0, Long.MAX_VALUE, 1);
+        engine = new DetectionEngine(1, 16, log, new DetectionStats(), new DetectionMetrics(), verdict -> {
+        });
+        Set<String> loaders = Set.copyOf(BenchmarkData.LOADERS);
+        Set<String> blocked = Set.copyOf(BenchmarkData.blocklist(rules));
+        engine.configure(new RuleSnapshot(loaders, blocked, Set.of(), RuleMatcher.compile(loaders, blocked),
+                new FingerprintCache(1024), ProbeSet.EMPTY, 4096, true, false, ""));
+
+        String[] source = switch (client) {
+            case "fabric" -> BenchmarkData.FABRIC_CHANNELS;
+            case "forge" -> BenchmarkData.FORGE_CHANNELS;
+            case "cheat" -> BenchmarkData.CHEAT_CHANNELS;
+            default -> BenchmarkData.VANILLA_CHANNELS;
+        };
+        channels = List.of(source);
+        brand = client;
+        handshake = BenchmarkData.payload(512, true);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        engine.close();
+    }
+
+    @Benchmark
+    public boolean join() {
+        PlayerSession session = new PlayerSession(new UUID(0L, ++joins), "bench");
+        List<String> added = session.addNewChannels(channels);
+        session.setBrand(brand);
+        return engine.evaluateChannels(session, added)
+                | engine.evaluateClient(session)
+                | engine.evaluatePayload(session, "fml:handshake", handshake);
+    }
+}
@@ -0,0 +1,45 @@
+package com.warakorn.modblocker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/** Plugin message payload scanning from 16 bytes up to 32 KB, framed and raw. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(3)
+public class PayloadScanBenchmark {
+
+    @Param({"16", "256", "4096", "32768"})
+    public int size;
+
+    @Param({"true", "false"})
+    public boolean framed;
+
+    private RuleMatcher matcher;
+    private byte[] payload;
+
+    @Setup
+    public void setup() {
+        matcher = RuleMatcher.compile(BenchmarkData.LOADERS, BenchmarkData.blocklist(300));
+        payload = BenchmarkData.payload(size, framed);
+    }
+
+    @Benchmark
+    public int scan() {
+        return PayloadScanner.scan(matcher, payload, Integer.MAX_VALUE);
+    }
+}
@@ -0,0 +1,190 @@
+package com.warakorn.modblocker;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Properties;
+import java.util.stream.Stream;
+
+/**
+ * Compares a JMH CSV result against the committed baseline and fails the
+ * build when a benchmark got slower by more than the allowed percentage and
+ * the two 99.9% confidence intervals do not overlap. The baseline directory
+ * holds jmh-result.csv and environment.properties; results from another CPU
+ * model or JVM major version are only reported, never gated. Patch releases
+ * of the JVM and the runner's core count or OS do not change the gate.
+ *
+ * The current result and environment are always written to the output
+ * directory. To update the baseline, copy them into the baseline directory
+ * and commit them.
+ *
+ * Usage: RegressionCheck &lt;result.csv&gt; &lt;baseline-dir&gt; &lt;max-regression-percent&gt; &lt;output-dir&gt;
+ */
+public final class RegressionCheck {
+
+    private static final String RESULT = "jmh-result.csv";
+    private static final String ENVIRONMENT = "environment.properties";
+
+    /** Average time and its 99.9% error, both in the benchmark's unit. */
+    private record Score(double value, double error) {
+    }
+
+    private RegressionCheck() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        Path result = Path.of(args[0]);
+        Path baselineDir = Path.of(args[1]);
+        double maxRegression = Double.parseDouble(args[2]);
+        Path outputDir = Path.of(args[3]);
+
+        if (!Files.exists(result)) {
+            throw new IllegalStateException("No benchmark result at " + result);
+        }
+        Properties environment = environment();
+        Files.createDirectories(outputDir);
+        Files.copy(result, outputDir.resolve(RESULT), StandardCopyOption.REPLACE_EXISTING);
+        try (Writer out = Files.newBufferedWriter(outputDir.resolve(ENVIRONMENT))) {
+            environment.store(out, "Environment of " + RESULT);
+        }
+
+        Path baseline = baselineDir.resolve(RESULT);
+        if (!Files.exists(baseline)) {
+            System.out.println("No baseline at " + baseline + ", nothing to compare. To use this run as the"
+                    + " baseline, copy " + outputDir + " to " + baselineDir);
+            return;
+        }
+
+        Properties baselineEnvironment = new Properties();
+        Path baselineEnvironmentFile = baselineDir.resolve(ENVIRONMENT);
+        if (Files.exists(baselineEnvironmentFile)) {
+            try (Reader in = Files.newBufferedReader(baselineEnvironmentFile)) {
+                baselineEnvironment.load(in);
+            }
+        }
+        List<String> differences = new ArrayList<>();
+        for (String key : environment.stringPropertyNames()) {
+            if (!Objects.equals(environment.getProperty(key), baselineEnvironment.getProperty(key))) {
+                differences.add(key + ": " + baselineEnvironment.getProperty(key) + " -> "
+                        + environment.getProperty(key));
+            }
+        }
+        boolean comparable = differences.isEmpty();
+        if (!comparable) {
+            System.out.println("Baseline was measured in a different environment, reporting only:");
+            differences.forEach(difference -> System.out.println("  " + difference));
+        }
+
+        Map<String, Score> before = read(baseline);
+        Map<String, Score> after = read(result);
+        List<String> regressions = new ArrayList<>();
+
+        for (Map.Entry<String, Score> entry : after.entrySet()) {
+            Score old = before.get(entry.getKey());
+            Score current = entry.getValue();
+            if (old == null || old.value() <= 0) {
+                continue;
+            }
+            // All benchmarks report average time, so higher is worse
+            double change = (current.value() - old.value()) / old.value() * 100.0;
+            boolean slower = current.value() - current.error() > old.value() + old.error();
+            boolean faster = current.value() + current.error() < old.value() - old.error();
+            System.out.printf("%-90s %12.2f +/- %-8.2f -> %12.2f +/- %-8.2f (%+.1f%%)%s%n", entry.getKey(),
+                    old.value(), old.error(), current.value(), current.error(), change,
+                    slower || faster ? "" : " within error");
+            if (change > maxRegression && slower) {
+                regressions.add(entry.getKey() + String.format(" %+.1f%%", change));
+            }
+        }
+
+        if (!regressions.isEmpty()) {
+            if (!comparable) {
+                System.out.println("Slower than the baseline, not failing across environments: " + regressions);
+                return;
+            }
+            throw new IllegalStateException("Benchmarks regressed by more than " + maxRegression + "%: " + regressions);
+        }
+    }
+
+    /** What decides whether two runs can be compared at all. */
+    private static Properties environment() throws IOException {
+        Properties environment = new Properties();
+        environment.setProperty("cpu", cpuModel());
+        // Benchmarks run on one thread, a JIT change comes with a major version
+        environment.setProperty("jvm", System.getProperty("java.vm.name") + " " + Runtime.version().feature());
+        return environment;
+    }
+
+    private static String cpuModel() throws IOException {
+        Path cpuinfo = Path.of("/proc/cpuinfo");
+        if (Files.isReadable(cpuinfo)) {
+            try (Stream<String> lines = Files.lines(cpuinfo)) {
+                String model = lines.filter(line -> line.startsWith("model name"))
+                        .map(line -> line.substring(line.indexOf(':') + 1).trim())
+                        .findFirst().orElse(null);
+                if (model != null) {
+                    return model;
+                }
+            }
+        }
+        String identifier = System.getenv("PROCESSOR_IDENTIFIER");
+        return identifier != null ? identifier : System.getProperty("os.arch");
+    }
+
+    /** Benchmark name plus parameter values, mapped to the score. */
+    private static Map<String, Score> read(Path csv) throws IOException {
+        List<String> lines = Files.readAllLines(csv);
+        Map<String, Score> scores = new LinkedHashMap<>();
+        if (lines.isEmpty()) {
+            return scores;
+        }
+
+        List<String> header = split(lines.get(0));
+        int scoreColumn = header.indexOf("Score");
+        int errorColumn = header.indexOf("Score Error (99.9%)");
+        for (String line : lines.subList(1, lines.size())) {
+            List<String> columns = split(line);
+            if (columns.size() != header.size()) {
+                continue;
+            }
+            StringBuilder key = new StringBuilder(columns.get(0));
+            for (int i = 0; i < header.size(); i++) {
+                if (header.get(i).startsWith("Param: ") && !columns.get(i).isEmpty()) {
+                    key.append(' ').append(header.get(i).substring(7)).append('=').append(columns.get(i));
+                }
+            }
+            // Too few samples for an error estimate shows up as NaN
+            double error = errorColumn >= 0 ? Double.parseDouble(columns.get(errorColumn)) : Double.NaN;
+            scores.put(key.toString(), new Score(Double.parseDouble(columns.get(scoreColumn)),
+                    Double.isNaN(error) ? 0 : error));
+        }
+        return scores;
+    }
+
+    private static List<String> split(String line) {
+        List<String> columns = new ArrayList<>();
+        StringBuilder current = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ',' && !quoted) {
+                columns.add(current.toString());
+                current.setLength(0);
+            } else {
+                current.append(c);
+            }
+        }
+        columns.add(current.toString());
+        return columns;
+    }
+}
@@ -0,0 +1,228 @@
+package com.warakorn.modblocker;
+
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.entity.Player;
+
+import java.lang.reflect.Method;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A simulated client behind a {@link Player} proxy. Records what the plugin
+ * sends it and when it was kicked. Messages on channels it listens on get
+ * the client's reaction: answers are queued for the harness's next tick, a
+ * message the client cannot decode makes it disconnect.
+ */
+final class FakePlayer {
+
+    private final FakeServer server;
+    private final UUID uuid;
+    private final String name;
+    private final SimulatedClient client;
+    private final Player player;
+    private final Set<String> channels = ConcurrentHashMap.newKeySet();
+    private final List<String> pendingAnswers = new ArrayList<>();
+
+    private final InetAddress host;
+    private int port;
+    private volatile boolean online;
+    private long joinNanos;
+    private long kickNanos;
+    private String kickMessage;
+    private String disconnectChannel;
+    private int messagesReceived;
+    private long bytesReceived;
+
+    // Position for move events
+    private double x;
+    private double z;
+    private float yaw;
+
+    FakePlayer(FakeServer server, UUID uuid, String name, SimulatedClient client) {
+        this.server = server;
+        this.uuid = uuid;
+        this.name = name;
+        this.client = client;
+        this.host = host(uuid.getLeastSignificantBits());
+        this.player = FakeServer.proxy(Player.class, this::call);
+    }
+
+    // 10.x.y.z, one address per player
+    private static InetAddress host(long index) {
+        try {
+            return InetAddress.getByAddress(new byte[]{10, (byte) (index >> 16), (byte) (index >> 8), (byte) index});
+        } catch (UnknownHostException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    Player getPlayer() {
+        return player;
+    }
+
+    UUID getUuid() {
+        return uuid;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    SimulatedClient getClient() {
+        return client;
+    }
+
+    /** Remote address of the current connection, every login gets a new port. */
+    InetSocketAddress getAddress() {
+        return new InetSocketAddress(host, port);
+    }
+
+    boolean isOnline() {
+        return online;
+    }
+
+    void setOnline(boolean online) {
+        this.online = online;
+    }
+
+    /** Starts a new login, results of the previous one are cleared. */
+    void startLogin(long nanos) {
+        port = port < 40000 ? port + 1 : 1;
+        joinNanos = nanos;
+        kickNanos = 0;
+        kickMessage = null;
+        disconnectChannel = null;
+        channels.clear();
+        pendingAnswers.clear();
+    }
+
+    void addChannel(String channel) {
+        channels.add(channel);
+    }
+
+    boolean isKicked() {
+        return kickMessage != null;
+    }
+
+    long getKickLatencyNanos() {
+        return kickNanos - joinNanos;
+    }
+
+    String getKickMessage() {
+        return kickMessage;
+    }
+
+    /** Channel of the message the client could not decode and disconnected on, or null. */
+    String getDisconnectChannel() {
+        return disconnectChannel;
+    }
+
+    int getMessagesReceived() {
+        return messagesReceived;
+    }
+
+    long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /** Probes received since the last call, to be answered on the same channel. */
+    List<String> takeAnswers() {
+        if (pendingAnswers.isEmpty()) {
+            return List.of();
+        }
+        List<String> answers = List.copyOf(pendingAnswers);
+        pendingAnswers.clear();
+        return answers;
+    }
+
+    /** A small step in a random direction, returns the old and new position. */
+    Location[] step(double dx, double dz, float turn) {
+        Location from = new Location(null, x, 64, z, yaw, 0);
+        x += dx;
+        z += dz;
+        yaw = (yaw + turn) % 360f;
+        return new Location[]{from, new Location(null, x, 64, z, yaw, 0)};
+    }
+
+    private Object call(Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "getUniqueId" -> uuid;
+            case "getName", "getDisplayName" -> name;
+            case "isOnline" -> online;
+            case "hasPermission", "isOp" -> client.bypass();
+            case "getAddress" -> getAddress();
+            case "getListeningPluginChannels" -> Set.copyOf(channels);
+            case "getClientBrandName" -> client.brand();
+            case "getGameMode" -> GameMode.SURVIVAL;
+            case "getEyeHeight" -> 1.62;
+            case "getWidth" -> 0.6;
+            case "getHeight" -> 1.8;
+            case "getLocation" -> location(args.length > 0 ? (Location) args[0] : null);
+            case "kickPlayer" -> {
+                kick((String) args[0]);
+                yield null;
+            }
+            case "sendPluginMessage" -> {
+                send((String) args[1], (byte[]) args[2]);
+                yield null;
+            }
+            default -> FakeServer.defaultValue(method.getReturnType());
+        };
+    }
+
+    private Location location(Location target) {
+        if (target == null) {
+            return new Location(null, x, 64, z, yaw, 0);
+        }
+        target.setX(x);
+        target.setY(64);
+        target.setZ(z);
+        target.setYaw(yaw);
+        target.setPitch(0);
+        return target;
+    }
+
+    /** Disconnect packet during configuration, the player never joins. */
+    void disconnect(String message) {
+        kick(message);
+    }
+
+    // Main thread, the quit event follows on the harness's next pass like on a real server
+    private void kick(String message) {
+        if (kickMessage == null) {
+            kickNanos = System.nanoTime();
+            kickMessage = message;
+        }
+        online = false;
+    }
+
+    // Bukkit rejects unregistered outgoing channels and only sends what the client listens on
+    private void send(String channel, byte[] data) {
+        if (!server.isOutgoingRegistered(channel)) {
+            throw new IllegalArgumentException("Attempted to send on unregistered channel " + channel);
+        }
+        if (!channels.contains(channel) && !channel.equals(ProbeSet.BRAND)) {
+            return;
+        }
+        messagesReceived++;
+        bytesReceived += data.length;
+        switch (client.react(channel, data)) {
+            case ANSWER -> pendingAnswers.add(channel);
+            case DISCONNECT -> {
+                if (online && kickMessage == null) {
+                    disconnectChannel = channel;
+                    online = false;
+                }
+            }
+            case IGNORE -> {
+            }
+        }
+    }
+}
@@ -0,0 +1,416 @@
+package com.warakorn.modblocker;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.Server;
+import org.bukkit.event.Cancellable;
+import org.bukkit.event.Event;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.PluginManager;
+import org.bukkit.plugin.messaging.Messenger;
+import org.bukkit.plugin.messaging.PluginMessageListener;
+import org.bukkit.scheduler.BukkitScheduler;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * Just enough of the Bukkit server for ModBlocker to run offline. Server,
+ * PluginManager, BukkitScheduler and Messenger are dynamic proxies over this
+ * class, methods the plugin does not use return zero values. Sync tasks and
+ * events run on the thread that calls {@link #tick()}, which plays the main
+ * thread; time and allocations inside plugin code are accumulated per tick.
+ */
+final class FakeServer {
+
+    /** A registered event handler, called through a bound method handle. */
+    private record Handler(int priority, boolean ignoreCancelled, MethodHandle method) {
+    }
+
+    private static final class Task implements BukkitTask {
+        private static final AtomicInteger IDS = new AtomicInteger();
+
+        private final int id = IDS.incrementAndGet();
+        private final Runnable runnable;
+        private final boolean async;
+        private final long period;
+        private long due;
+        private volatile boolean cancelled;
+
+        Task(Runnable runnable, boolean async, long due, long period) {
+            this.runnable = runnable;
+            this.async = async;
+            this.due = due;
+            this.period = period;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        @Override
+        public int getTaskId() {
+            return id;
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    final Server server;
+    private final PluginManager pluginManager;
+    private final BukkitScheduler scheduler;
+    private final Messenger messenger;
+    private final Logger logger = Logger.getLogger("LoadTest");
+    private final Thread mainThread = Thread.currentThread();
+
+    private final Map<UUID, FakePlayer> online = new ConcurrentHashMap<>();
+    private final Map<Class<?>, List<Handler>> handlers = new HashMap<>();
+    private final Map<Class<?>, List<Handler>> resolved = new HashMap<>();
+    private final List<Task> tasks = new ArrayList<>();
+    private final Queue<Task> scheduled = new ConcurrentLinkedQueue<>();
+    private final ExecutorService async = Executors.newFixedThreadPool(2, runnable -> {
+        Thread thread = new Thread(runnable, "LoadTest async");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Set<String> incoming = ConcurrentHashMap.newKeySet();
+    private final Set<String> outgoing = ConcurrentHashMap.newKeySet();
+    private volatile PluginMessageListener messageListener;
+
+    private long currentTick;
+    private long pluginNanos;
+    private long pluginBytes;
+
+    FakeServer() {
+        this.server = proxy(Server.class, this::serverCall);
+        this.pluginManager = proxy(PluginManager.class, this::pluginManagerCall);
+        this.scheduler = proxy(BukkitScheduler.class, this::schedulerCall);
+        this.messenger = proxy(Messenger.class, this::messengerCall);
+    }
+
+    long getCurrentTick() {
+        return currentTick;
+    }
+
+    // Main thread
+
+    /** Runs the sync tasks due this tick, then advances the clock. */
+    void tick() {
+        for (Task task; (task = scheduled.poll()) != null; ) {
+            tasks.add(task);
+        }
+        for (Iterator<Task> it = tasks.iterator(); it.hasNext(); ) {
+            Task task = it.next();
+            if (task.cancelled) {
+                it.remove();
+                continue;
+            }
+            if (task.due > currentTick) {
+                continue;
+            }
+            if (task.async) {
+                async.execute(task.runnable);
+            } else {
+                measure(task.runnable);
+            }
+            if (task.period > 0) {
+                task.due = currentTick + task.period;
+            } else {
+                it.remove();
+            }
+        }
+        currentTick++;
+    }
+
+    void join(FakePlayer player) {
+        player.setOnline(true);
+        online.put(player.getUuid(), player);
+    }
+
+    /** Fires the quit event for a player that left or was kicked. */
+    void quit(FakePlayer player) {
+        if (online.remove(player.getUuid()) == null) {
+            return;
+        }
+        player.setOnline(false);
+        fire(new PlayerQuitEvent(player.getPlayer(), Component.empty()));
+    }
+
+    void fire(Event event) {
+        List<Handler> list = handlers(event.getClass());
+        if (list.isEmpty()) {
+            return;
+        }
+        measure(() -> {
+            for (Handler handler : list) {
+                if (handler.ignoreCancelled() && event instanceof Cancellable cancellable
+                        && cancellable.isCancelled()) {
+                    continue;
+                }
+                try {
+                    handler.method().invoke(event);
+                } catch (Throwable e) {
+                    logger.warning("Handler failed for " + event.getClass().getSimpleName() + ": " + e);
+                }
+            }
+        });
+    }
+
+    /** Delivers a message from the client the way Bukkit does, only on channels a plugin listens on. */
+    void receive(FakePlayer player, String channel, byte[] message) {
+        PluginMessageListener listener = messageListener;
+        if (listener == null || !incoming.contains(channel)) {
+            return;
+        }
+        measure(() -> listener.onPluginMessageReceived(channel, player.getPlayer(), message));
+    }
+
+    boolean isOutgoingRegistered(String channel) {
+        return outgoing.contains(channel);
+    }
+
+    Set<String> getIncomingChannels() {
+        return Set.copyOf(incoming);
+    }
+
+    Collection<FakePlayer> getOnline() {
+        return online.values();
+    }
+
+    /** Plugin time and main-thread allocations since the last call. */
+    long takePluginNanos() {
+        long nanos = pluginNanos;
+        pluginNanos = 0;
+        return nanos;
+    }
+
+    long takePluginBytes() {
+        long bytes = pluginBytes;
+        pluginBytes = 0;
+        return bytes;
+    }
+
+    void shutdown() throws InterruptedException {
+        async.shutdown();
+        async.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void measure(Runnable call) {
+        long bytes = THREADS.getCurrentThreadAllocatedBytes();
+        long start = System.nanoTime();
+        try {
+            call.run();
+        } finally {
+            pluginNanos += System.nanoTime() - start;
+            pluginBytes += THREADS.getCurrentThreadAllocatedBytes() - bytes;
+        }
+    }
+
+    // Handlers registered for a superclass see subclass events too, like a shared HandlerList
+    private List<Handler> handlers(Class<?> type) {
+        return resolved.computeIfAbsent(type, this::resolve);
+    }
+
+    private List<Handler> resolve(Class<?> type) {
+        List<Handler> all = new ArrayList<>();
+        for (Class<?> current = type; current != null && current != Object.class; current = current.getSuperclass()) {
+            all.addAll(handlers.getOrDefault(current, List.of()));
+        }
+        all.sort(Comparator.comparingInt(Handler::priority));
+        return List.copyOf(all);
+    }
+
+    private void register(Listener listener) throws IllegalAccessException {
+        resolved.clear();
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        for (Method method : listener.getClass().getMethods()) {
+            EventHandler annotation = method.getAnnotation(EventHandler.class);
+            if (annotation == null || method.getParameterCount() != 1) {
+                continue;
+            }
+            handlers.computeIfAbsent(method.getParameterTypes()[0], key -> new ArrayList<>())
+                    .add(new Handler(annotation.priority().ordinal(), annotation.ignoreCancelled(),
+                            lookup.unreflect(method).bindTo(listener)));
+        }
+    }
+
+    // Proxies
+
+    private Object serverCall(Method method, Object[] args) {
+        return switch (method.getName()) {
+            case "getPluginManager" -> pluginManager;
+            case "getMessenger" -> messenger;
+            case "getScheduler" -> scheduler;
+            case "getLogger" -> logger;
+            case "getName" -> "LoadTest";
+            case "getVersion", "getBukkitVersion" -> "loadtest";
+            case "isPrimaryThread" -> Thread.currentThread() == mainThread;
+            case "getOnlinePlayers" -> online.values().stream().map(FakePlayer::getPlayer).toList();
+            case "getPlayer" -> {
+                if (args[0] instanceof UUID uuid) {
+                    FakePlayer player = online.get(uuid);
+                    yield player != null ? player.getPlayer() : null;
+                }
+                yield online.values().stream().filter(player -> player.getName().equals(args[0]))
+                        .map(FakePlayer::getPlayer).findFirst().orElse(null);
+            }
+            default -> defaultValue(method.getReturnType());
+        };
+    }
+
+    private Object pluginManagerCall(Method method, Object[] args) throws IllegalAccessException {
+        switch (method.getName()) {
+            case "registerEvents" -> register((Listener) args[0]);
+            case "callEvent" -> fire((Event) args[0]);
+            default -> {
+                return defaultValue(method.getReturnType());
+            }
+        }
+        return null;
+    }
+
+    private Object schedulerCall(Method method, Object[] args) {
+        Runnable runnable = (Runnable) args[1];
+        Task task = switch (method.getName()) {
+            case "runTask" -> new Task(runnable, false, currentTick, 0);
+            case "runTaskLater" -> new Task(runnable, false, currentTick + (long) args[2], 0);
+            case "runTaskTimer" -> new Task(runnable, false, currentTick + (long) args[2], Math.max(1, (long) args[3]));
+            case "runTaskAsynchronously" -> new Task(runnable, true, currentTick, 0);
+            case "runTaskTimerAsynchronously" ->
+                    new Task(runnable, true, currentTick + (long) args[2], Math.max(1, (long) args[3]));
+            default -> null;
+        };
+        if (task == null) {
+            return defaultValue(method.getReturnType());
+        }
+        scheduled.add(task);
+        return task;
+    }
+
+    private Object messengerCall(Method method, Object[] args) {
+        switch (method.getName()) {
+            case "registerIncomingPluginChannel" -> {
+                incoming.add((String) args[1]);
+                messageListener = (PluginMessageListener) args[2];
+            }
+            case "unregisterIncomingPluginChannel" -> {
+                if (args.length > 1) {
+                    incoming.remove((String) args[1]);
+                } else {
+                    incoming.clear();
+                }
+            }
+            case "registerOutgoingPluginChannel" -> outgoing.add((String) args[1]);
+            case "unregisterOutgoingPluginChannel" -> {
+                if (args.length > 1) {
+                    outgoing.remove((String) args[1]);
+                } else {
+                    outgoing.clear();
+                }
+            }
+            case "isOutgoingChannelRegistered" -> {
+                return outgoing.contains((String) args[1]);
+            }
+            case "getIncomingChannels" -> {
+                return Set.copyOf(incoming);
+            }
+            case "getOutgoingChannels" -> {
+                return Set.copyOf(outgoing);
+            }
+            default -> {
+                return defaultValue(method.getReturnType());
+            }
+        }
+        return null;
+    }
+
+    interface Call {
+        Object invoke(Method method, Object[] args) throws Throwable;
+    }
+
+    /** Proxy for an API interface, Object methods use identity. */
+    static <T> T proxy(Class<T> type, Call call) {
+        InvocationHandler handler = new InvocationHandler() {
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                if (method.getDeclaringClass() == Object.class) {
+                    return switch (method.getName()) {
+                        case "equals" -> proxy == args[0];
+                        case "hashCode" -> System.identityHashCode(proxy);
+                        default -> type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                    };
+                }
+                return call.invoke(method, args != null ? args : new Object[0]);
+            }
+        };
+        return type.cast(Proxy.newProxyInstance(FakeServer.class.getClassLoader(), new Class<?>[]{type}, handler));
+    }
+
+    static Object defaultValue(Class<?> type) {
+        if (!type.isPrimitive()) {
+            if (type == Set.class) {
+                return Set.of();
+            }
+            if (type == List.class || type == Collection.class) {
+                return List.of();
+            }
+            return null;
+        }
+        if (type == boolean.class) {
+            return false;
+        }
+        if (type == int.class) {
+            return 0;
+        }
+        if (type == long.class) {
+            return 0L;
+        }
+        if (type == double.class) {
+            return 0d;
+        }
+        if (type == float.class) {
+            return 0f;
+        }
+        if (type == short.class) {
+            return (short) 0;
+        }
+        if (type == byte.class) {
+            return (byte) 0;
+        }
+        if (type == char.class) {
+            return (char) 0;
+        }
+        return null;
+    }
+}
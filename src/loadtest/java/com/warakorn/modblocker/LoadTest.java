@@ -0,0 +1,415 @@
+package com.warakorn.modblocker;
+
+import net.kyori.adventure.text.Component;
+import org.bukkit.Location;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerRegisterChannelEvent;
+import org.bukkit.plugin.PluginDescriptionFile;
+import org.bukkit.plugin.java.JavaPluginLoader;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Offline load test. Runs the real plugin against {@link FakeServer} and
+ * replays a {@link Scenario}: joins spread over a window, channel
+ * registrations, brands, mod payloads, probe answers, spam and movement,
+ * one simulated tick at a time. Reports main-thread time and allocations
+ * per tick and the join-to-kick latency of blocked clients.
+ *
+ * With protocollib=true every login first goes through the configuration
+ * phase at the packet layer, as ProtocolLib would deliver it: the client's
+ * brand and channel registration from a temporary player that cannot answer
+ * permission checks. The run fails if a client with a blocked channel gets
+ * past configuration.
+ *
+ * Clients react to what the plugin sends them as real ones do: request/response
+ * mod channels answer a probe, a brand or probe their decoder cannot read
+ * disconnects them. The run fails if a probe disconnects a client.
+ *
+ * Usage: LoadTest [join-storm|payload-spam|reconnect-wave|configuration|probes] [key=value ...]
+ */
+public final class LoadTest {
+
+    private static final long TICK_NANOS = 50_000_000L;
+
+    /** The plugin, created outside a plugin class loader. */
+    private static final class LoadTestPlugin extends ModBlocker {
+        LoadTestPlugin(FakeServer server, File dataFolder) {
+            super(new JavaPluginLoader(server.server), new PluginDescriptionFile("ModBlocker", "loadtest",
+                    ModBlocker.class.getName()), dataFolder, new File(dataFolder, "ModBlocker.jar"));
+        }
+
+        void start() {
+            setEnabled(true);
+        }
+
+        void stop() {
+            setEnabled(false);
+        }
+    }
+
+    private static final com.sun.management.ThreadMXBean THREADS =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private final Scenario scenario;
+    private final FakeServer server;
+    private final PacketInspector inspector;
+    private final Random random;
+    private final byte[] payload;
+    private final List<FakePlayer> active = new ArrayList<>();
+    private final Map<SimulatedClient, int[]> outcomes = new EnumMap<>(SimulatedClient.class);
+    private final List<Long> kickLatencies = new ArrayList<>();
+    private String spamChannel;
+    private int wrongKicks;
+    private int configurationKicks;
+    private int admittedBlocked;
+    private int probeDisconnects;
+    private long probeAnswers;
+
+    private LoadTest(Scenario scenario, FakeServer server, PacketInspector inspector) {
+        this.scenario = scenario;
+        this.server = server;
+        this.inspector = inspector;
+        this.random = new Random(scenario.seed());
+        this.payload = new byte[scenario.payloadBytes()];
+        for (int i = 0; i < payload.length; i++) {
+            payload[i] = (byte) (' ' + random.nextInt(95));
+        }
+        for (SimulatedClient client : SimulatedClient.values()) {
+            outcomes.put(client, new int[2]);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Scenario scenario = Scenario.parse(args);
+        Path dataFolder = Files.createTempDirectory("modblocker-loadtest");
+        FakeServer server = new FakeServer();
+        LoadTestPlugin plugin = new LoadTestPlugin(server, dataFolder.toFile());
+        boolean passed;
+        if (scenario.probeChannels() != null) {
+            writeConfig(dataFolder, scenario.probeChannels());
+        }
+        plugin.start();
+        try {
+            passed = new LoadTest(scenario, server, scenario.protocolLib() ? plugin.inspectPackets() : null).run();
+        } finally {
+            plugin.stop();
+            server.shutdown();
+            delete(dataFolder);
+        }
+        if (!passed) {
+            System.exit(1);
+        }
+    }
+
+    private boolean run() throws InterruptedException {
+        int ticks = scenario.ticks();
+        List<List<FakePlayer>> joins = new ArrayList<>(ticks);
+        for (int i = 0; i < ticks; i++) {
+            joins.add(new ArrayList<>());
+        }
+        List<FakePlayer> players = new ArrayList<>(scenario.players());
+        for (int i = 0; i < scenario.players(); i++) {
+            FakePlayer player = new FakePlayer(server, new UUID(scenario.seed(), i), "player" + i,
+                    scenario.pick(random));
+            players.add(player);
+            joins.get(Math.min(ticks - 1, random.nextInt(scenario.windowTicks()))).add(player);
+        }
+        int rejoinTick = scenario.rejoin() ? ticks / 2 : -1;
+
+        // Spam goes to a channel the plugin actually listens on
+        spamChannel = server.getIncomingChannels().stream().sorted().findFirst().orElse("minecraft:brand");
+
+        long[] pluginNanos = new long[ticks];
+        long[] pluginBytes = new long[ticks];
+        long[] tickNanos = new long[ticks];
+        long allocatedBefore = allocatedByAllThreads();
+        long started = System.nanoTime();
+
+        for (int tick = 0; tick < ticks; tick++) {
+            long tickStart = System.nanoTime();
+            if (tick == rejoinTick) {
+                reconnect(players, joins, tick);
+            }
+            for (FakePlayer player : joins.get(tick)) {
+                login(player);
+            }
+            for (FakePlayer player : active) {
+                traffic(player);
+            }
+            server.tick();
+            for (int i = active.size() - 1; i >= 0; i--) {
+                FakePlayer player = active.get(i);
+                if (!player.isOnline()) {
+                    active.remove(i);
+                    kicked(player);
+                    server.quit(player);
+                }
+            }
+
+            pluginNanos[tick] = server.takePluginNanos();
+            pluginBytes[tick] = server.takePluginBytes();
+            tickNanos[tick] = System.nanoTime() - tickStart;
+            if (scenario.realtime()) {
+                long sleep = tickStart + TICK_NANOS - System.nanoTime();
+                if (sleep > 0) {
+                    TimeUnit.NANOSECONDS.sleep(sleep);
+                }
+            }
+        }
+
+        long elapsed = System.nanoTime() - started;
+        long allocated = allocatedByAllThreads() - allocatedBefore;
+        return report(players, pluginNanos, pluginBytes, tickNanos, elapsed, allocated);
+    }
+
+    // Everyone still online leaves at once, then all players, kicked ones included,
+    // come back over another join window
+    private void reconnect(List<FakePlayer> players, List<List<FakePlayer>> joins, int tick) {
+        active.clear();
+        for (FakePlayer player : players) {
+            server.quit(player);
+            int at = tick + 20 + random.nextInt(scenario.windowTicks());
+            if (at < joins.size()) {
+                joins.get(at).add(player);
+            }
+        }
+    }
+
+    private void login(FakePlayer player) {
+        SimulatedClient client = player.getClient();
+        player.startLogin(System.nanoTime());
+        outcomes.get(client)[0]++;
+        if (inspector != null) {
+            if (!configure(player)) {
+                configurationKicks++;
+                kicked(player);
+                return;
+            }
+            if (client.expected() == SimulatedClient.Expected.BLOCKED_CHANNEL) {
+                admittedBlocked++;
+            }
+        }
+        server.join(player);
+        active.add(player);
+
+        server.fire(new PlayerJoinEvent(player.getPlayer(), Component.empty()));
+        for (String channel : client.channels()) {
+            player.addChannel(channel);
+            server.fire(new PlayerRegisterChannelEvent(player.getPlayer(), channel));
+        }
+        receive(player, "minecraft:brand", encodeString(client.brand()));
+
+        // Mods send their handshake data right after login, request/response channels wait to be asked
+        if (client != SimulatedClient.VANILLA && client != SimulatedClient.SPAM) {
+            for (String channel : client.channels()) {
+                if (!client.answers(channel)) {
+                    receive(player, channel, payload);
+                }
+            }
+        }
+    }
+
+    // The login event, then what the client sends during configuration. False if it was disconnected.
+    private boolean configure(FakePlayer player) {
+        InetSocketAddress address = player.getAddress();
+        server.fire(new PlayerLoginEvent(player.getPlayer(), "localhost", address.getAddress()));
+        SimulatedClient client = player.getClient();
+        return configurationPacket(player, "minecraft:brand", client.brand())
+                && configurationPacket(player, PacketInspector.REGISTER,
+                String.join("\0", client.channels()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private boolean configurationPacket(FakePlayer player, String channel, Object data) {
+        PacketInspector.Result result = inspector.inspect(true, player.getAddress(), null, null, null, channel, data);
+        if (result.action() != PacketInspector.Action.DISCONNECT) {
+            return true;
+        }
+        player.disconnect(result.message());
+        return false;
+    }
+
+    // Through the packet layer first when it is simulated, like ProtocolLib on the netty thread
+    private void receive(FakePlayer player, String channel, byte[] message) {
+        if (inspector != null && inspector.inspect(false, player.getAddress(), player.getUuid(), player.getName(),
+                player.getClient().bypass(), channel, message).action() != PacketInspector.Action.PASS) {
+            return;
+        }
+        server.receive(player, channel, message);
+    }
+
+    private void traffic(FakePlayer player) {
+        for (String channel : player.takeAnswers()) {
+            probeAnswers++;
+            receive(player, channel, payload);
+        }
+        if (player.getClient() == SimulatedClient.SPAM) {
+            for (int i = 0; i < scenario.spamPerTick() && player.isOnline(); i++) {
+                receive(player, spamChannel, payload);
+            }
+        }
+        if (scenario.moves()) {
+            double angle = random.nextDouble() * Math.PI * 2;
+            Location[] step = player.step(Math.cos(angle) * 0.2, Math.sin(angle) * 0.2,
+                    (float) (random.nextGaussian() * 10));
+            server.fire(new PlayerMoveEvent(player.getPlayer(), step[0], step[1]));
+        }
+    }
+
+    private void kicked(FakePlayer player) {
+        if (player.getDisconnectChannel() != null) {
+            probeDisconnects++;
+            System.out.println("Disconnected by a probe: " + player.getName() + " (" + player.getClient().key()
+                    + ") on " + player.getDisconnectChannel());
+            return;
+        }
+        if (!player.isKicked()) {
+            return;
+        }
+        outcomes.get(player.getClient())[1]++;
+        if (player.getClient().blocked()) {
+            kickLatencies.add(player.getKickLatencyNanos());
+        } else {
+            wrongKicks++;
+            System.out.println("Unexpected kick of " + player.getName() + " (" + player.getClient().key() + "): "
+                    + player.getKickMessage().replace('\n', ' '));
+        }
+    }
+
+    private boolean report(List<FakePlayer> players, long[] pluginNanos, long[] pluginBytes, long[] tickNanos,
+            long elapsed, long allocated) {
+        System.out.printf("ModBlocker load test: %s%n", scenario.name());
+        System.out.printf("  %d players joining over %.1f s, %d ticks (%.1f s wall), %s%n", scenario.players(),
+                scenario.windowSeconds(), tickNanos.length, elapsed / 1e9, scenario.describeMix());
+
+        System.out.println("Main thread per tick, plugin code only:");
+        printDistribution("time", pluginNanos, 1e6, "ms");
+        long over = Arrays.stream(pluginNanos).filter(nanos -> nanos > TICK_NANOS / 20).count();
+        System.out.printf("  ticks over 5%% of the tick budget (2.5 ms): %d%n", over);
+        System.out.println("Main thread per simulated tick, including event construction:");
+        printDistribution("time", tickNanos, 1e6, "ms");
+        System.out.println("Allocations:");
+        printDistribution("plugin, main thread per tick", pluginBytes, 1024, "KB");
+        System.out.printf("  all threads over the run: %.1f MB%n", allocated / (1024.0 * 1024.0));
+
+        System.out.println("Detection latency, join to kick:");
+        long[] latencies = kickLatencies.stream().mapToLong(Long::longValue).toArray();
+        if (latencies.length > 0) {
+            printDistribution("blocked clients (" + latencies.length + ")", latencies, 1e6, "ms");
+        } else {
+            System.out.println("  no kicks");
+        }
+
+        long probes = 0;
+        long probeBytes = 0;
+        for (FakePlayer player : players) {
+            probes += player.getMessagesReceived();
+            probeBytes += player.getBytesReceived();
+        }
+        System.out.printf("Outbound: %d messages, %.1f KB%n", probes, probeBytes / 1024.0);
+        System.out.printf("Probes: %d answered, %d clients disconnected%n", probeAnswers, probeDisconnects);
+
+        System.out.println("Outcomes:");
+        int missed = 0;
+        for (Map.Entry<SimulatedClient, int[]> entry : outcomes.entrySet()) {
+            int[] counts = entry.getValue();
+            if (counts[0] == 0) {
+                continue;
+            }
+            SimulatedClient client = entry.getKey();
+            System.out.printf("  %-8s %5d logins, %5d kicked%s%n", client.key(), counts[0], counts[1],
+                    client.blocked() ? " (expected " + counts[0] + ")" : "");
+            if (client.blocked()) {
+                missed += counts[0] - counts[1];
+            }
+        }
+
+        if (inspector != null) {
+            System.out.printf("Disconnected during configuration: %d, blocked channels admitted to join: %d%n",
+                    configurationKicks, admittedBlocked);
+        }
+
+        if (missed > 0 || wrongKicks > 0 || admittedBlocked > 0 || probeDisconnects > 0) {
+            System.out.printf("FAILED: %d blocked clients not kicked, %d clean clients kicked, "
+                    + "%d blocked channels past configuration, %d clients disconnected by a probe%n", missed,
+                    wrongKicks, admittedBlocked, probeDisconnects);
+            return false;
+        }
+        return true;
+    }
+
+    private static void printDistribution(String label, long[] values, double unit, String suffix) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        double mean = Arrays.stream(sorted).average().orElse(0);
+        System.out.printf("  %s: mean %.3f %s, p50 %.3f, p99 %.3f, max %.3f%n", label, mean / unit, suffix,
+                percentile(sorted, 0.5) / unit, percentile(sorted, 0.99) / unit,
+                sorted.length > 0 ? sorted[sorted.length - 1] / unit : 0);
+    }
+
+    private static double percentile(long[] sorted, double quantile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(quantile * sorted.length) - 1)];
+    }
+
+    private static long allocatedByAllThreads() {
+        long total = 0;
+        for (long bytes : THREADS.getThreadAllocatedBytes(THREADS.getAllThreadIds())) {
+            if (bytes > 0) {
+                total += bytes;
+            }
+        }
+        return total;
+    }
+
+    // VarInt length prefix followed by UTF-8, like minecraft:brand on the wire
+    private static byte[] encodeString(String value) {
+        byte[] text = value.getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = new byte[text.length + 1];
+        encoded[0] = (byte) text.length;
+        System.arraycopy(text, 0, encoded, 1, text.length);
+        return encoded;
+    }
+
+    // The default config with the scenario's probe channels, saveDefaultConfig keeps an existing file
+    private static void writeConfig(Path dataFolder, String probeChannels) throws IOException {
+        YamlConfiguration config;
+        try (Reader reader = new InputStreamReader(LoadTest.class.getResourceAsStream("/config.yml"),
+                StandardCharsets.UTF_8)) {
+            config = YamlConfiguration.loadConfiguration(reader);
+        }
+        config.set("probe.channels", List.of(probeChannels.split(",")));
+        config.save(dataFolder.resolve("config.yml").toFile());
+    }
+
+    private static void delete(Path folder) throws IOException {
+        try (Stream<Path> paths = Files.walk(folder)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(path);
+            }
+        }
+    }
+}
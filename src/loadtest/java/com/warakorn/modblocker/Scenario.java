@@ -0,0 +1,127 @@
+package com.warakorn.modblocker;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * One load test run: how many clients join over what window, the client
+ * mix and the traffic they send. Built from a preset plus key=value
+ * overrides, e.g. {@code join-storm players=2000 mix=vanilla:80,cheat:20}.
+ * A null probeChannels keeps probe.channels of the default config.
+ */
+record Scenario(String name, int players, double windowSeconds, double durationSeconds,
+        Map<SimulatedClient, Integer> mix, int spamPerTick, int payloadBytes, boolean moves, boolean rejoin,
+        boolean protocolLib, boolean realtime, String probeChannels, long seed) {
+
+    static Scenario preset(String name) {
+        return switch (name) {
+            case "join-storm" -> new Scenario(name, 1000, 5, 30,
+                    mix("vanilla:55,fabric:20,forge:15,cheat:5,spam:5"), 20, 512, true, false, false, true, null, 1);
+            case "payload-spam" -> new Scenario(name, 200, 2, 15,
+                    mix("vanilla:50,spam:50"), 100, 2048, false, false, false, true, null, 1);
+            case "reconnect-wave" -> new Scenario(name, 1000, 5, 40,
+                    mix("vanilla:60,fabric:20,forge:15,cheat:5"), 0, 512, true, true, false, true, null, 1);
+            // Packet layer as with ProtocolLib, blocked channels must not get past configuration
+            case "configuration" -> new Scenario(name, 500, 5, 20,
+                    mix("vanilla:50,fabric:20,forge:15,cheat:10,staff:5"), 0, 512, true, false, true, true, null, 1);
+            // Probes on handshake and mod channels, no client that is allowed may be disconnected by one
+            case "probes" -> new Scenario(name, 500, 5, 20,
+                    mix("vanilla:40,fabric:30,forge:25,cheat:5"), 0, 512, true, false, false, true,
+                    "fml:handshake,fabric:handshake,forge:login,jade:request_entity,jei:network", 1);
+            default -> throw new IllegalArgumentException("Unknown scenario " + name
+                    + ", expected join-storm, payload-spam, reconnect-wave, configuration or probes");
+        };
+    }
+
+    /** First argument may name a preset (default join-storm), the rest override its fields. */
+    static Scenario parse(String[] args) {
+        Scenario scenario = preset(args.length > 0 && !args[0].contains("=") ? args[0] : "join-storm");
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split > 0) {
+                scenario = scenario.with(arg.substring(0, split), arg.substring(split + 1));
+            }
+        }
+        return scenario;
+    }
+
+    Scenario with(String key, String value) {
+        return switch (key) {
+            case "players" -> new Scenario(name, Integer.parseInt(value), windowSeconds, durationSeconds, mix,
+                    spamPerTick, payloadBytes, moves, rejoin, protocolLib, realtime, probeChannels, seed);
+            case "window" -> new Scenario(name, players, Double.parseDouble(value), durationSeconds, mix,
+                    spamPerTick, payloadBytes, moves, rejoin, protocolLib, realtime, probeChannels, seed);
+            case "duration" -> new Scenario(name, players, windowSeconds, Double.parseDouble(value), mix,
+                    spamPerTick, payloadBytes, moves, rejoin, protocolLib, realtime, probeChannels, seed);
+            case "mix" -> new Scenario(name, players, windowSeconds, durationSeconds, mix(value),
+                    spamPerTick, payloadBytes, moves, rejoin, protocolLib, realtime, probeChannels, seed);
+            case "spam-rate" -> new Scenario(name, players, windowSeconds, durationSeconds, mix,
+                    Integer.parseInt(value), payloadBytes, moves, rejoin, protocolLib, realtime, probeChannels, seed);
+            case "payload-bytes" -> new Scenario(name, players, windowSeconds, durationSeconds, mix,
+                    spamPerTick, Integer.parseInt(value), moves, rejoin, protocolLib, realtime, probeChannels, seed);
+            case "moves" -> new Scenario(name, players, windowSeconds, durationSeconds, mix,
+                    spamPerTick, payloadBytes, Boolean.parseBoolean(value), rejoin, protocolLib, realtime, probeChannels, seed);
+            case "rejoin" -> new Scenario(name, players, windowSeconds, durationSeconds, mix,
+                    spamPerTick, payloadBytes, moves, Boolean.parseBoolean(value), protocolLib, realtime, probeChannels, seed);
+            case "protocollib" -> new Scenario(name, players, windowSeconds, durationSeconds, mix,
+                    spamPerTick, payloadBytes, moves, rejoin, Boolean.parseBoolean(value), realtime, probeChannels, seed);
+            case "realtime" -> new Scenario(name, players, windowSeconds, durationSeconds, mix,
+                    spamPerTick, payloadBytes, moves, rejoin, protocolLib, Boolean.parseBoolean(value), probeChannels, seed);
+            case "probe-channels" -> new Scenario(name, players, windowSeconds, durationSeconds, mix,
+                    spamPerTick, payloadBytes, moves, rejoin, protocolLib, realtime, value, seed);
+            case "seed" -> new Scenario(name, players, windowSeconds, durationSeconds, mix,
+                    spamPerTick, payloadBytes, moves, rejoin, protocolLib, realtime, probeChannels, Long.parseLong(value));
+            default -> throw new IllegalArgumentException("Unknown option " + key);
+        };
+    }
+
+    int ticks() {
+        return Math.max(1, (int) (durationSeconds * 20));
+    }
+
+    int windowTicks() {
+        return Math.max(1, (int) (windowSeconds * 20));
+    }
+
+    /** Weighted pick from the mix. */
+    SimulatedClient pick(Random random) {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        int roll = random.nextInt(total);
+        for (Map.Entry<SimulatedClient, Integer> entry : mix.entrySet()) {
+            roll -= entry.getValue();
+            if (roll < 0) {
+                return entry.getKey();
+            }
+        }
+        return SimulatedClient.VANILLA;
+    }
+
+    // vanilla:55,fabric:20,...
+    private static Map<SimulatedClient, Integer> mix(String value) {
+        Map<SimulatedClient, Integer> mix = new EnumMap<>(SimulatedClient.class);
+        for (String part : value.split(",")) {
+            String[] pair = part.split(":");
+            int weight = pair.length > 1 ? Integer.parseInt(pair[1].trim()) : 1;
+            if (weight > 0) {
+                mix.put(SimulatedClient.parse(pair[0]), weight);
+            }
+        }
+        if (mix.isEmpty()) {
+            throw new IllegalArgumentException("Empty client mix " + value);
+        }
+        return mix;
+    }
+
+    String describeMix() {
+        int total = mix.values().stream().mapToInt(Integer::intValue).sum();
+        StringBuilder out = new StringBuilder();
+        for (Map.Entry<SimulatedClient, Integer> entry : mix.entrySet()) {
+            if (!out.isEmpty()) {
+                out.append(", ");
+            }
+            out.append(entry.getKey().key()).append(' ').append(entry.getValue() * 100 / total).append('%');
+        }
+        return out.toString();
+    }
+}
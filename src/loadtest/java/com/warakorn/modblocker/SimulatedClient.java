@@ -0,0 +1,111 @@
+package com.warakorn.modblocker;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Client types a scenario mixes, with the channels they register on login
+ * and how they react to what the server sends on them.
+ */
+enum SimulatedClient {
+    VANILLA("vanilla", Expected.ALLOWED, List.of()),
+    FABRIC("fabric", Expected.ALLOWED, List.of("jade:request_entity"),
+            "fabric:registry/sync", "fabric:handshake", "fabric-screen-handler-api-v1:open_screen",
+            "sodium:config", "iris:shaders", "modmenu:update", "lithium:sync", "c:version", "jade:request_entity"),
+    FORGE("forge", Expected.ALLOWED, List.of("jei:network"),
+            "forge:handshake", "forge:login", "forge:play", "fml:handshake", "fml:hs", "jei:network",
+            "create:main", "curios:main", "patchouli:main", "ftbquests:main", "ae2:main", "mekanism:mekanism"),
+    CHEAT("fabric", Expected.BLOCKED_CHANNEL, List.of(),
+            "fabric:registry/sync", "fabric:handshake", "sodium:config", "meteor-client:main", "baritone:settings"),
+    // The same client on a player with modblocker.bypass
+    STAFF("fabric", Expected.BYPASSED, List.of(),
+            "fabric:registry/sync", "fabric:handshake", "sodium:config", "meteor-client:main", "baritone:settings"),
+    // Registers far more channels than any modpack and spams plugin messages
+    SPAM("vanilla", Expected.FLOOD, List.of());
+
+    /** What the plugin should do with the client. */
+    enum Expected {
+        ALLOWED,
+        // Kicked for a blocked channel, with ProtocolLib already during configuration
+        BLOCKED_CHANNEL,
+        BYPASSED,
+        FLOOD
+    }
+
+    /** What the client does with a message the server sent on a channel it listens on. */
+    enum Reaction {
+        IGNORE,
+        // Request/response channels, the mod replies on the same channel
+        ANSWER,
+        // The decoder failed, the client drops the connection with a protocol error
+        DISCONNECT
+    }
+
+    static final int SPAM_CHANNELS = 2000;
+
+    private final String brand;
+    private final Expected expected;
+    private final List<String> answers;
+    private final String[] channels;
+
+    SimulatedClient(String brand, Expected expected, List<String> answers, String... channels) {
+        this.brand = brand;
+        this.expected = expected;
+        this.answers = answers;
+        this.channels = channels;
+    }
+
+    String brand() {
+        return brand;
+    }
+
+    Expected expected() {
+        return expected;
+    }
+
+    /** True if the plugin is expected to kick this client. */
+    boolean blocked() {
+        return expected == Expected.BLOCKED_CHANNEL || expected == Expected.FLOOD;
+    }
+
+    boolean bypass() {
+        return expected == Expected.BYPASSED;
+    }
+
+    /** True for request/response channels, the mod only sends on them when asked. */
+    boolean answers(String channel) {
+        return answers.contains(channel);
+    }
+
+    /**
+     * Every client parses the server brand and disconnects if it is not a
+     * VarInt-prefixed string. Loader handshakes and most mod codecs cannot
+     * decode a message they did not expect and disconnect as well; only
+     * request/response channels answer.
+     */
+    Reaction react(String channel, byte[] data) {
+        if (channel.equals(ProbeSet.BRAND)) {
+            return PayloadScanner.readString(data, Short.MAX_VALUE) != null ? Reaction.IGNORE : Reaction.DISCONNECT;
+        }
+        return answers(channel) ? Reaction.ANSWER : Reaction.DISCONNECT;
+    }
+
+    String[] channels() {
+        if (this != SPAM) {
+            return channels;
+        }
+        String[] spam = new String[SPAM_CHANNELS];
+        for (int i = 0; i < spam.length; i++) {
+            spam[i] = "spam:c" + i;
+        }
+        return spam;
+    }
+
+    String key() {
+        return name().toLowerCase(Locale.ROOT);
+    }
+
+    static SimulatedClient parse(String value) {
+        return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+}
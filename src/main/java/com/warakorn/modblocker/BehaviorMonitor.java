@@ -0,0 +1,504 @@
+package com.warakorn.modblocker;
+
+import org.bukkit.GameMode;
+import org.bukkit.Location;
+import org.bukkit.Material;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.entity.Entity;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.block.Action;
+import org.bukkit.event.entity.EntityDamageByEntityEvent;
+import org.bukkit.event.entity.EntityDamageEvent;
+import org.bukkit.event.entity.EntityPotionEffectEvent;
+import org.bukkit.event.player.PlayerInteractEvent;
+import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.potion.PotionEffect;
+import org.bukkit.potion.PotionEffectType;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Behavior checks for clients that hide their mods. Clicks, melee reach,
+ * rotation and horizontal movement are written into fixed-size primitive
+ * rings on the session; every check-interval ticks a player's window is
+ * reduced to a few streaming statistics. Players are spread evenly over the
+ * interval so each tick only evaluates its share, and nothing is allocated
+ * per event. Main thread only.
+ */
+final class BehaviorMonitor implements Listener {
+
+    /** Limits from behavior-monitoring in config.yml. */
+    record Thresholds(boolean enabled, int checkInterval, int maxChecks, double maxCps, double minClickDeviationMs,
+            double maxReach, double snapAngle, double maxSnapRatio, double maxSpeed) {
+
+        static Thresholds parse(ConfigurationSection config) {
+            return new Thresholds(
+                    config.getBoolean("behavior-monitoring.enabled", true),
+                    Math.max(1, config.getInt("behavior-monitoring.check-interval", 40)),
+                    Math.max(1, config.getInt("behavior-monitoring.max-checks", 10)),
+                    config.getDouble("behavior-monitoring.max-cps", 20),
+                    config.getDouble("behavior-monitoring.min-click-deviation-ms", 10),
+                    config.getDouble("behavior-monitoring.max-reach", 3.6),
+                    config.getDouble("behavior-monitoring.snap-angle", 40),
+                    config.getDouble("behavior-monitoring.max-snap-ratio", 0.7),
+                    config.getDouble("behavior-monitoring.max-speed", 1.0));
+        }
+    }
+
+    /** Fixed-size ring of timestamped samples, the oldest is overwritten first. */
+    static final class Ring {
+        private final long[] times;
+        private final float[] values;
+        private final int mask;
+        private int count;
+
+        Ring(int size) {
+            this.times = new long[size];
+            this.values = new float[size];
+            this.mask = size - 1;
+        }
+
+        void add(long time, float value) {
+            int index = count++ & mask;
+            times[index] = time;
+            values[index] = value;
+        }
+
+        int size() {
+            return Math.min(count, times.length);
+        }
+
+        // Age 0 is the newest sample
+        long time(int age) {
+            return times[(count - 1 - age) & mask];
+        }
+
+        float value(int age) {
+            return values[(count - 1 - age) & mask];
+        }
+    }
+
+    /** One player's samples, allocated once when tracking starts. */
+    static final class Samples {
+        private final PlayerSession session;
+        private final Ring clicks = new Ring(64); // nanoTime
+        private final Ring reach = new Ring(32); // tick, blocks from eye to hitbox
+        private final Ring rotation = new Ring(64); // tick, degrees per move
+        private final Ring movement = new Ring(64); // tick, horizontal blocks per move
+        private int attacks;
+        private int snaps;
+        private long exemptUntil;
+        private double surface = 1;
+        private long surfaceUntil;
+        // Speed level and Dolphin's Grace, read from the player once and then kept by the effect events
+        private boolean effectsKnown;
+        private int speed;
+        private boolean dolphinsGrace;
+        private int violations;
+        private int bucket;
+
+        private Samples(PlayerSession session) {
+            this.session = session;
+        }
+    }
+
+    private static final long SECOND = 1_000_000_000L;
+    private static final long CLICK_RUN_GAP = 250_000_000L;
+    private static final int EXEMPT_TICKS = 40;
+    // Sprint-jumping stays under this, faster moves are scaled by whatever allows them
+    private static final double PLAIN_SPEED = 0.3;
+    // Momentum from ice carries on well past the last block of it
+    private static final int SLIDE_TICKS = 40;
+
+    private final SessionRegistry sessions;
+    private final DetectionEngine engine;
+    private final DetectionLog log;
+    private final DetectionMetrics metrics;
+
+    // Scratch locations, filled in place instead of allocating per hit
+    private final Location eye = new Location(null, 0, 0, 0);
+    private final Location victim = new Location(null, 0, 0, 0);
+
+    private Thresholds thresholds;
+    private List<List<Samples>> buckets = List.of();
+    private int nextBucket;
+    private long tick;
+
+    BehaviorMonitor(SessionRegistry sessions, DetectionEngine engine, DetectionLog log, DetectionMetrics metrics) {
+        this.sessions = sessions;
+        this.engine = engine;
+        this.log = log;
+        this.metrics = metrics;
+    }
+
+    void configure(Thresholds thresholds) {
+        this.thresholds = thresholds;
+        if (!thresholds.enabled()) {
+            clear();
+            return;
+        }
+        if (buckets.size() == thresholds.checkInterval()) {
+            return;
+        }
+        // Spread everyone already tracked over the new interval
+        List<Samples> tracked = new ArrayList<>();
+        buckets.forEach(tracked::addAll);
+        buckets = new ArrayList<>(thresholds.checkInterval());
+        for (int i = 0; i < thresholds.checkInterval(); i++) {
+            buckets.add(new ArrayList<>());
+        }
+        nextBucket = 0;
+        for (Samples samples : tracked) {
+            place(samples);
+        }
+    }
+
+    boolean isEnabled() {
+        return thresholds != null && thresholds.enabled();
+    }
+
+    /** Starts sampling the session's player, a no-op if already tracked or disabled. */
+    void track(PlayerSession session) {
+        if (!isEnabled() || session.getBehavior() != null) {
+            return;
+        }
+        Samples samples = new Samples(session);
+        session.setBehavior(samples);
+        place(samples);
+    }
+
+    void untrack(PlayerSession session) {
+        Samples samples = session.getBehavior();
+        if (samples == null) {
+            return;
+        }
+        session.setBehavior(null);
+        if (samples.bucket < buckets.size()) {
+            buckets.get(samples.bucket).remove(samples);
+        }
+    }
+
+    void clear() {
+        for (List<Samples> bucket : buckets) {
+            for (Samples samples : bucket) {
+                samples.session.setBehavior(null);
+            }
+        }
+        buckets = List.of();
+    }
+
+    private void place(Samples samples) {
+        samples.bucket = nextBucket;
+        buckets.get(nextBucket).add(samples);
+        nextBucket = (nextBucket + 1) % buckets.size();
+    }
+
+    /** Called once per tick, evaluates the players whose turn it is. */
+    void tick() {
+        tick++;
+        if (!isEnabled()) {
+            return;
+        }
+        List<Samples> due = buckets.get((int) (tick % buckets.size()));
+        for (int i = due.size() - 1; i >= 0; i--) {
+            Samples samples = due.get(i);
+            // Dropped by the session sweep without a quit event
+            if (sessions.get(samples.session.getUuid()) != samples.session) {
+                samples.session.setBehavior(null);
+                due.remove(i);
+                continue;
+            }
+            long start = System.nanoTime();
+            evaluate(samples);
+            metrics.record(DetectionMetrics.Stage.BEHAVIOR_CHECK, System.nanoTime() - start);
+        }
+    }
+
+    // Sampling
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onInteract(PlayerInteractEvent event) {
+        // Swings at air arrive as already-cancelled events. Digging is LEFT_CLICK_BLOCK and not a click.
+        if (event.getAction() != Action.LEFT_CLICK_AIR) {
+            return;
+        }
+        Samples samples = samples(event.getPlayer());
+        if (samples != null) {
+            samples.clicks.add(System.nanoTime(), 0f);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onAttack(EntityDamageByEntityEvent event) {
+        if (event.getCause() != EntityDamageEvent.DamageCause.ENTITY_ATTACK
+                || !(event.getDamager() instanceof Player player)) {
+            return;
+        }
+        Samples samples = samples(player);
+        if (samples == null) {
+            return;
+        }
+        samples.clicks.add(System.nanoTime(), 0f);
+        samples.attacks++;
+
+        // Killaura turns onto the target in the same tick it hits
+        Ring rotation = samples.rotation;
+        if (rotation.size() > 0 && rotation.time(0) >= tick - 1 && rotation.value(0) >= thresholds.snapAngle()) {
+            samples.snaps++;
+        }
+        if (player.getGameMode() != GameMode.CREATIVE) {
+            samples.reach.add(tick, (float) reach(player, event.getEntity()));
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onDamaged(EntityDamageEvent event) {
+        // Knockback moves a player faster than they can walk
+        if (event.getEntity() instanceof Player player) {
+            Samples samples = samples(player);
+            if (samples != null) {
+                samples.exemptUntil = tick + EXEMPT_TICKS;
+            }
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPotionEffect(EntityPotionEffectEvent event) {
+        if (!(event.getEntity() instanceof Player player)) {
+            return;
+        }
+        Samples samples = samples(player);
+        // Until the first fast move reads them from the player there is nothing to keep up to date
+        if (samples == null || !samples.effectsKnown) {
+            return;
+        }
+        PotionEffectType type = event.getModifiedType();
+        PotionEffect effect = event.getNewEffect();
+        if (PotionEffectType.SPEED.equals(type)) {
+            samples.speed = effect != null ? effect.getAmplifier() + 1 : 0;
+        } else if (PotionEffectType.DOLPHINS_GRACE.equals(type)) {
+            samples.dolphinsGrace = effect != null;
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMove(PlayerMoveEvent event) {
+        Player player = event.getPlayer();
+        Samples samples = samples(player);
+        if (samples == null || event.getTo() == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        sampleMove(player, event.getFrom(), event.getTo(), samples);
+        long elapsed = System.nanoTime() - start;
+        metrics.record(DetectionMetrics.Stage.BEHAVIOR_CHECK, elapsed);
+        metrics.addMainThread(elapsed);
+    }
+
+    private void sampleMove(Player player, Location from, Location to, Samples samples) {
+        float yaw = Math.abs(to.getYaw() - from.getYaw()) % 360f;
+        if (yaw > 180f) {
+            yaw = 360f - yaw;
+        }
+        float turn = yaw + Math.abs(to.getPitch() - from.getPitch());
+        if (turn > 0f) {
+            samples.rotation.add(tick, turn);
+        }
+
+        double dx = to.getX() - from.getX();
+        double dz = to.getZ() - from.getZ();
+        if (dx == 0 && dz == 0) {
+            return;
+        }
+        if (player.isFlying() || player.isGliding() || player.isRiptiding() || player.isInsideVehicle()
+                || player.getGameMode() == GameMode.SPECTATOR) {
+            samples.exemptUntil = tick + EXEMPT_TICKS;
+            return;
+        }
+        double distance = Math.sqrt(dx * dx + dz * dz);
+        if (distance > PLAIN_SPEED) {
+            distance /= allowance(player, from, samples);
+        }
+        samples.movement.add(tick, (float) distance);
+    }
+
+    /** How many times faster than plain sprinting the player may move now, from Speed, Dolphin's Grace and ice. */
+    private double allowance(Player player, Location from, Samples samples) {
+        if (!samples.effectsKnown) {
+            PotionEffect speed = player.getPotionEffect(PotionEffectType.SPEED);
+            samples.speed = speed != null ? speed.getAmplifier() + 1 : 0;
+            samples.dolphinsGrace = player.getPotionEffect(PotionEffectType.DOLPHINS_GRACE) != null;
+            samples.effectsKnown = true;
+        }
+        double allowance = 1 + 0.2 * samples.speed;
+        if (samples.dolphinsGrace) {
+            allowance *= 2;
+        }
+
+        double surface = surface(from);
+        if (surface > 1) {
+            samples.surface = surface;
+            samples.surfaceUntil = tick + SLIDE_TICKS;
+        } else if (samples.surfaceUntil >= tick) {
+            surface = samples.surface;
+        }
+        return allowance * surface;
+    }
+
+    // Slipperiness of the block under the player's feet
+    private static double surface(Location from) {
+        World world = from.getWorld();
+        if (world == null) {
+            return 1;
+        }
+        Material below = world.getType(from.getBlockX(), (int) Math.floor(from.getY() - 0.5), from.getBlockZ());
+        return switch (below) {
+            case BLUE_ICE -> 2.5;
+            case ICE, PACKED_ICE, FROSTED_ICE -> 1.5;
+            default -> 1;
+        };
+    }
+
+    private Samples samples(Player player) {
+        PlayerSession session = sessions.get(player.getUniqueId());
+        return session != null ? session.getBehavior() : null;
+    }
+
+    // Distance from the attacker's eyes to the nearest point of the target's hitbox
+    private double reach(Player player, Entity target) {
+        player.getLocation(eye);
+        target.getLocation(victim);
+        double eyeY = eye.getY() + player.getEyeHeight();
+        double halfWidth = target.getWidth() / 2;
+        double dx = Math.max(Math.abs(eye.getX() - victim.getX()) - halfWidth, 0);
+        double dz = Math.max(Math.abs(eye.getZ() - victim.getZ()) - halfWidth, 0);
+        double dy = eyeY < victim.getY()
+                ? victim.getY() - eyeY
+                : Math.max(eyeY - (victim.getY() + target.getHeight()), 0);
+        return Math.sqrt(dx * dx + dy * dy + dz * dz);
+    }
+
+    // Evaluation
+
+    private void evaluate(Samples samples) {
+        Thresholds limits = thresholds;
+        long windowStart = tick - limits.checkInterval();
+        String reason = checkClicks(samples, limits);
+        if (reason == null) {
+            reason = checkReach(samples, limits, windowStart);
+        }
+        if (reason == null && samples.attacks >= 5
+                && samples.snaps > limits.maxSnapRatio() * samples.attacks) {
+            reason = "aim snaps on " + samples.snaps + "/" + samples.attacks + " hits";
+        }
+        if (reason == null && samples.exemptUntil < windowStart) {
+            reason = checkSpeed(samples, limits, windowStart);
+        }
+        samples.attacks = 0;
+        samples.snaps = 0;
+
+        if (reason == null) {
+            // Clean windows slowly forgive earlier ones
+            if (samples.violations > 0) {
+                samples.violations--;
+            }
+            return;
+        }
+
+        samples.violations++;
+        PlayerSession session = samples.session;
+        log.info(session, "behavior", null, reason + " (" + samples.violations + "/" + limits.maxChecks() + ")");
+        if (samples.violations >= limits.maxChecks() && !session.isDetected()) {
+            samples.violations = 0;
+            engine.detected(session, "blocked-behavior", null, Verdict.BEHAVIOR, "Suspicious behavior: " + reason,
+                    false);
+        }
+    }
+
+    /** Peak clicks in any one second of the window, and how evenly spaced runs of clicks are. */
+    private String checkClicks(Samples samples, Thresholds limits) {
+        Ring clicks = samples.clicks;
+        long now = System.nanoTime();
+        long window = limits.checkInterval() * 50_000_000L;
+        int count = 0;
+        while (count < clicks.size() && now - clicks.time(count) <= window) {
+            count++;
+        }
+        if (count < 10) {
+            return null;
+        }
+
+        int peak = 0;
+        for (int newest = 0, oldest = 0; newest < count; newest++) {
+            while (oldest < count && clicks.time(newest) - clicks.time(oldest) < SECOND) {
+                oldest++;
+            }
+            peak = Math.max(peak, oldest - newest);
+        }
+        if (peak > limits.maxCps()) {
+            return peak + " cps";
+        }
+
+        // Welford over the gaps inside click runs, pauses are not part of the rhythm
+        int gaps = 0;
+        double mean = 0;
+        double m2 = 0;
+        for (int age = 1; age < count; age++) {
+            long gap = clicks.time(age - 1) - clicks.time(age);
+            if (gap > CLICK_RUN_GAP) {
+                continue;
+            }
+            double millis = gap / 1_000_000d;
+            gaps++;
+            double delta = millis - mean;
+            mean += delta / gaps;
+            m2 += delta * (millis - mean);
+        }
+        if (gaps >= 10 && peak >= 8) {
+            double deviation = Math.sqrt(m2 / gaps);
+            if (deviation < limits.minClickDeviationMs()) {
+                return String.format("%d cps with %.1fms click deviation", peak, deviation);
+            }
+        }
+        return null;
+    }
+
+    /** One long hit can be latency, two in the same window are not. */
+    private String checkReach(Samples samples, Thresholds limits, long windowStart) {
+        Ring reach = samples.reach;
+        int over = 0;
+        float longest = 0f;
+        for (int age = 0; age < reach.size() && reach.time(age) > windowStart; age++) {
+            float distance = reach.value(age);
+            if (distance > limits.maxReach()) {
+                over++;
+                longest = Math.max(longest, distance);
+            }
+        }
+        return over >= 2 ? String.format("reach %.2f blocks on %d hits", longest, over) : null;
+    }
+
+    /**
+     * Average horizontal speed over the moves in the window, only if the player
+     * kept moving. Fast moves were already divided by their allowance.
+     */
+    private String checkSpeed(Samples samples, Thresholds limits, long windowStart) {
+        Ring movement = samples.movement;
+        int moves = 0;
+        double distance = 0;
+        for (int age = 0; age < movement.size() && movement.time(age) > windowStart; age++) {
+            distance += movement.value(age);
+            moves++;
+        }
+        if (moves < limits.checkInterval() / 2) {
+            return null;
+        }
+        double speed = distance / moves;
+        return speed > limits.maxSpeed() ? String.format("speed %.2f blocks/tick after effects and ice", speed) : null;
+    }
+}
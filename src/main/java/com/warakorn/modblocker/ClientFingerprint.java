@@ -0,0 +1,43 @@
+package com.warakorn.modblocker;
+
+import java.util.Collection;
+
+/**
+ * Stable 64-bit hashes identifying a client by its channel set and the brand
+ * it sent on minecraft:brand. Each channel is hashed on its own and the
+ * results are summed, so the fingerprint does not depend on the order the
+ * client registered its channels in. The fingerprint cache and the verdict
+ * store both key on {@link #of(Collection, String)}.
+ */
+final class ClientFingerprint {
+
+    private ClientFingerprint() {
+    }
+
+    /** Channel set plus brand, the brand is null if the client sent none. */
+    static long of(Collection<String> channels, String brand) {
+        long sum = 0;
+        for (String channel : channels) {
+            sum += mix(hash(channel));
+        }
+        long hash = mix(sum + channels.size());
+        return brand == null ? hash : mix(hash ^ (hash(brand) * 0x9e3779b97f4a7c15L));
+    }
+
+    /** FNV-1a over the UTF-16 chars, stable across restarts unlike String.hashCode mixing. */
+    static long hash(CharSequence value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0, length = value.length(); i < length; i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /** SplitMix64 finalizer. */
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,254 @@
+package com.warakorn.modblocker;
+
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Runs rule matching on worker threads. Callers hand over immutable
+ * snapshots (channel names, payload copies, the brand string) taken on the
+ * main thread; blocked results are passed to the verdict sink, which must be
+ * thread-safe. Nothing in here touches the Bukkit API.
+ */
+final class DetectionEngine {
+
+    private final ThreadPoolExecutor executor;
+    private final DetectionLog log;
+    private final DetectionStats stats;
+    private final DetectionMetrics metrics;
+    private final Consumer<Verdict> verdicts;
+
+    private volatile RuleSnapshot rules = RuleSnapshot.EMPTY;
+
+    DetectionEngine(int threads, int queueSize, DetectionLog log, DetectionStats stats, DetectionMetrics metrics,
+            Consumer<Verdict> verdicts) {
+        this.log = log;
+        this.stats = stats;
+        this.metrics = metrics;
+        this.verdicts = verdicts;
+
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory factory = task -> {
+            Thread thread = new Thread(task, "ModBlocker-Detection-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        // When the queue is full the caller runs the check itself rather than losing it
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(16, queueSize)), factory, new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    void configure(RuleSnapshot rules) {
+        this.rules = rules;
+    }
+
+    /** Read once per check, so the whole check runs against one rule set. */
+    RuleSnapshot getRules() {
+        return rules;
+    }
+
+    RuleMatcher getMatcher() {
+        return rules.matcher();
+    }
+
+    int getCacheSize() {
+        return rules.cache().size();
+    }
+
+    int getMaxInspectBytes() {
+        return rules.maxInspectBytes();
+    }
+
+    void checkChannel(PlayerSession session, String channel) {
+        executor.execute(() -> evaluateChannel(session, channel));
+    }
+
+    /**
+     * Evaluates channels the session has not seen before. With
+     * {@code reportUnblocked} a modded client that passed is logged with its
+     * full channel list.
+     */
+    void checkChannels(PlayerSession session, List<String> newChannels, boolean reportUnblocked) {
+        if (newChannels.isEmpty() && !reportUnblocked) {
+            return;
+        }
+        executor.execute(() -> {
+            evaluateChannels(session, newChannels);
+
+            // If no blocked mods found, log it
+            if (reportUnblocked && session.getChannelCount() > 2 && !session.isDetected()
+                    && log.isEnabled(DetectionLog.Level.INFO)) {
+                log.info(session, "modded-not-blocked", null, String.join(", ", session.getChannels()));
+            }
+        });
+    }
+
+    /** The payload must be a private copy, the worker reads it later. */
+    void checkPayload(PlayerSession session, String channel, byte[] payload) {
+        executor.execute(() -> evaluatePayload(session, channel, payload));
+    }
+
+    /** Client check over the session's brand and every channel it has seen. */
+    void checkClient(PlayerSession session) {
+        executor.execute(() -> evaluateClient(session));
+    }
+
+    boolean evaluateChannel(PlayerSession session, String channel) {
+        long start = System.nanoTime();
+        try {
+            return matchChannel(session, channel);
+        } finally {
+            metrics.record(DetectionMetrics.Stage.CHANNEL_REGISTER, System.nanoTime() - start);
+        }
+    }
+
+    private boolean matchChannel(PlayerSession session, String channel) {
+        RuleMatcher rules = this.rules.matcher();
+        // Allowed mod loaders take priority over blocked mods
+        int match = rules.matchChannel(channel);
+        if (match != RuleMatcher.NO_MATCH) {
+            metrics.recordChannelHit(channel);
+        }
+
+        if (rules.isAllowed(match)) {
+            session.markModded();
+            log.info(session, "allowed-loader", channel, rules.pattern(match));
+            return false;
+        }
+
+        if (match != RuleMatcher.NO_MATCH) {
+            String blockedMod = rules.pattern(match);
+            detected(session, "blocked-channel", channel, blockedMod, blockedMod, true); // ส่งเฉพาะชื่อ mod ไม่ใส่ Blocked Mod ซ้ำ
+            return true;
+        }
+
+        log.debug(session, "channel", channel, null);
+        return false;
+    }
+
+    boolean evaluateChannels(PlayerSession session, List<String> channels) {
+        if (log.isEnabled(DetectionLog.Level.DEBUG)) {
+            log.debug(session, "channel-count", null, String.valueOf(channels.size()));
+        }
+        for (String channel : channels) {
+            if (evaluateChannel(session, channel)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    boolean evaluatePayload(PlayerSession session, String channel, byte[] payload) {
+        RuleSnapshot current = this.rules;
+        RuleMatcher rules = current.matcher();
+        // Scan the raw bytes, nothing is decoded unless a blocked mod is found
+        long start = System.nanoTime();
+        int match = PayloadScanner.scan(rules, payload, current.maxInspectBytes());
+        metrics.record(DetectionMetrics.Stage.PAYLOAD_SCAN, System.nanoTime() - start);
+        metrics.recordPayloadBytes(Math.min(payload.length, current.maxInspectBytes()));
+        if (match == RuleMatcher.NO_MATCH) {
+            return false;
+        }
+        String blockedMod = rules.pattern(match);
+        detected(session, "blocked-payload", channel, blockedMod, "Mod data: " + blockedMod, true);
+        return true;
+    }
+
+    /**
+     * Brand first, then the channel rules over the full channel set. Clients
+     * with the same channels and brand share one evaluation through the
+     * fingerprint cache.
+     */
+    boolean evaluateClient(PlayerSession session) {
+        long start = System.nanoTime();
+        RuleSnapshot current = rules;
+        String brand = session.getBrand();
+        List<String> channels = session.getChannels();
+        long fingerprint = ClientFingerprint.of(channels, brand);
+
+        FingerprintCache.Result result = current.cache().get(fingerprint);
+        if (result != null) {
+            metrics.recordCacheHit();
+            log.debug(session, "cached-verdict", null, Long.toHexString(fingerprint));
+        } else {
+            metrics.recordCacheMiss();
+            result = classify(current.matcher(), brand, channels);
+            current.cache().put(fingerprint, result);
+        }
+        metrics.record(DetectionMetrics.Stage.BRAND_PROBE, System.nanoTime() - start);
+
+        if (result.modded()) {
+            session.markModded();
+        }
+        if (brand != null && !brand.equals("vanilla")) {
+            log.info(session, "client-brand", null, brand);
+        }
+        if (result.blocked()) {
+            // A registration check may have got there first
+            if (!session.isDetected()) {
+                detected(session, result.event(), result.channel(), result.rule(), result.reason(), true);
+            }
+            return true;
+        }
+        if (channels.size() > 2 && log.isEnabled(DetectionLog.Level.INFO)) {
+            log.info(session, "suspicious", null, channels.size() + " channels");
+        }
+        return false;
+    }
+
+    private FingerprintCache.Result classify(RuleMatcher rules, String brand, List<String> channels) {
+        boolean modded = channels.size() > 2; // More than normal minecraft channels
+
+        // Check brand against blocked list
+        if (brand != null && !brand.equals("vanilla")) {
+            modded = true;
+            int match = rules.findBlocked(brand);
+            if (match != RuleMatcher.NO_MATCH) {
+                String blockedMod = rules.pattern(match);
+                return new FingerprintCache.Result("blocked-brand", null, blockedMod, "Client Brand: " + blockedMod,
+                        true);
+            }
+        }
+
+        for (String channel : channels) {
+            int match = rules.matchChannel(channel);
+            if (match == RuleMatcher.NO_MATCH) {
+                continue;
+            }
+            metrics.recordChannelHit(channel);
+            if (rules.isAllowed(match)) {
+                modded = true;
+            } else {
+                String blockedMod = rules.pattern(match);
+                return new FingerprintCache.Result("blocked-channel", channel, blockedMod, blockedMod, modded);
+            }
+        }
+        return new FingerprintCache.Result(null, null, null, null, modded);
+    }
+
+    /**
+     * Records a detection and hands its verdict to the sink. {@code client} is
+     * false for detections about the session rather than the client. Safe to
+     * call from any thread.
+     */
+    void detected(PlayerSession session, String event, String channel, String blockedMod, String reason,
+            boolean client) {
+        session.markDetected();
+        stats.recordDetection(blockedMod);
+        log.detection(session, event, channel, blockedMod);
+        verdicts.accept(new Verdict(session.getUuid(), blockedMod, reason, client));
+    }
+
+    void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
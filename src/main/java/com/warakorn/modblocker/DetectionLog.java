@@ -0,0 +1,307 @@
+package com.warakorn.modblocker;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Structured detection log. Callers only enqueue into a bounded buffer; a
+ * background thread writes JSON lines to logs/detections.jsonl, rolls the
+ * file by size and mirrors detections to the console when log-detections is
+ * on. When the buffer is full new entries are dropped and counted.
+ */
+final class DetectionLog {
+
+    enum Level {
+        OFF, DETECTION, INFO, DEBUG;
+
+        static Level parse(String value, Level fallback) {
+            if (value == null) {
+                return fallback;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return fallback;
+            }
+        }
+    }
+
+    private record Entry(long time, Level level, String event, UUID uuid, String player, String channel,
+            String detail) {
+    }
+
+    private static final String FILE_NAME = "detections";
+
+    private final File directory;
+    private final Logger console;
+    private final BlockingQueue<Entry> buffer;
+    private final LongAdder dropped = new LongAdder();
+    private final Thread writerThread;
+
+    private volatile Level level = Level.DETECTION;
+    private volatile boolean consoleDetections = true;
+    private volatile double playerEventsPerSecond = 10;
+    private volatile long maxFileBytes = 10L * 1024 * 1024;
+    private volatile int maxFiles = 5;
+    private volatile boolean running = true;
+
+    private Writer writer;
+    private long fileBytes;
+
+    DetectionLog(File directory, Logger console, int bufferSize) {
+        this.directory = directory;
+        this.console = console;
+        this.buffer = new ArrayBlockingQueue<>(Math.max(64, bufferSize));
+        this.writerThread = new Thread(this::drainLoop, "ModBlocker-DetectionLog");
+        this.writerThread.setDaemon(true);
+    }
+
+    void configure(Level level, boolean consoleDetections, double playerEventsPerSecond, long maxFileBytes,
+            int maxFiles) {
+        this.level = level;
+        this.consoleDetections = consoleDetections;
+        this.playerEventsPerSecond = playerEventsPerSecond;
+        this.maxFileBytes = Math.max(64 * 1024, maxFileBytes);
+        this.maxFiles = Math.max(1, maxFiles);
+    }
+
+    void start() {
+        writerThread.start();
+    }
+
+    boolean isEnabled(Level wanted) {
+        return wanted != Level.OFF && wanted.ordinal() <= level.ordinal();
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    /** Detections and kicks. Never rate limited and mirrored to the console if log-detections is set. */
+    void detection(PlayerSession session, String event, String channel, String detail) {
+        if (isEnabled(Level.DETECTION) || consoleDetections) {
+            enqueue(Level.DETECTION, session, event, channel, detail);
+        }
+    }
+
+    void info(PlayerSession session, String event, String channel, String detail) {
+        if (isEnabled(Level.INFO) && allowed(session)) {
+            enqueue(Level.INFO, session, event, channel, detail);
+        }
+    }
+
+    void debug(PlayerSession session, String event, String channel, String detail) {
+        if (isEnabled(Level.DEBUG) && allowed(session)) {
+            enqueue(Level.DEBUG, session, event, channel, detail);
+        }
+    }
+
+    private boolean allowed(PlayerSession session) {
+        return session == null || session.tryAcquireLogToken(System.nanoTime(), playerEventsPerSecond);
+    }
+
+    private void enqueue(Level entryLevel, PlayerSession session, String event, String channel, String detail) {
+        Entry entry = new Entry(System.currentTimeMillis(), entryLevel, event,
+                session != null ? session.getUuid() : null,
+                session != null ? session.getName() : null,
+                channel, detail);
+        if (!buffer.offer(entry)) {
+            dropped.increment();
+        }
+    }
+
+    /** Stops the writer after it has flushed whatever is still buffered. */
+    void close() {
+        running = false;
+        writerThread.interrupt();
+        try {
+            writerThread.join(2000L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drainLoop() {
+        List<Entry> batch = new ArrayList<>(256);
+        while (running || !buffer.isEmpty()) {
+            try {
+                Entry first = buffer.poll(1, TimeUnit.SECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                if (running) {
+                    continue;
+                }
+            }
+            buffer.drainTo(batch, 255);
+            write(batch);
+            batch.clear();
+        }
+        closeWriter();
+    }
+
+    private void write(List<Entry> batch) {
+        StringBuilder line = new StringBuilder(256);
+        for (Entry entry : batch) {
+            if (entry.level() == Level.DETECTION && consoleDetections) {
+                console.warning(consoleLine(entry));
+            }
+            if (!isEnabled(entry.level())) {
+                continue;
+            }
+
+            line.setLength(0);
+            toJson(entry, line);
+            line.append('\n');
+            try {
+                openWriter();
+                writer.write(line.toString());
+                fileBytes += utf8Length(line);
+                if (fileBytes >= maxFileBytes) {
+                    roll();
+                }
+            } catch (IOException e) {
+                console.warning("Failed to write detection log: " + e.getMessage());
+                closeWriter();
+                return;
+            }
+        }
+        try {
+            if (writer != null) {
+                writer.flush();
+            }
+        } catch (IOException e) {
+            closeWriter();
+        }
+    }
+
+    private void openWriter() throws IOException {
+        if (writer != null) {
+            return;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Cannot create " + directory);
+        }
+        File file = new File(directory, FILE_NAME + ".jsonl");
+        fileBytes = file.length();
+        writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8));
+    }
+
+    private void roll() throws IOException {
+        closeWriter();
+        File oldest = archive(maxFiles);
+        if (oldest.exists() && !oldest.delete()) {
+            throw new IOException("Cannot delete " + oldest);
+        }
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            File from = archive(i);
+            if (from.exists() && !from.renameTo(archive(i + 1))) {
+                throw new IOException("Cannot roll " + from);
+            }
+        }
+        File current = new File(directory, FILE_NAME + ".jsonl");
+        if (!current.renameTo(archive(1))) {
+            throw new IOException("Cannot roll " + current);
+        }
+    }
+
+    private File archive(int index) {
+        return new File(directory, FILE_NAME + "." + index + ".jsonl");
+    }
+
+    private void closeWriter() {
+        if (writer == null) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            // Nothing left to do with a broken writer
+        }
+        writer = null;
+    }
+
+    private static String consoleLine(Entry entry) {
+        StringBuilder line = new StringBuilder(128);
+        line.append('[').append(entry.event()).append(']');
+        if (entry.player() != null) {
+            line.append(" player=").append(entry.player());
+        }
+        if (entry.channel() != null) {
+            line.append(" channel=").append(entry.channel());
+        }
+        if (entry.detail() != null) {
+            line.append(' ').append(entry.detail());
+        }
+        return line.toString();
+    }
+
+    private static void toJson(Entry entry, StringBuilder out) {
+        out.append("{\"time\":\"").append(Instant.ofEpochMilli(entry.time())).append('"');
+        out.append(",\"level\":\"").append(entry.level().name().toLowerCase(Locale.ROOT)).append('"');
+        appendField(out, "event", entry.event());
+        appendField(out, "player", entry.player());
+        appendField(out, "uuid", entry.uuid() != null ? entry.uuid().toString() : null);
+        appendField(out, "channel", entry.channel());
+        appendField(out, "detail", entry.detail());
+        out.append('}');
+    }
+
+    // Bytes the line takes in the file, without encoding it a second time
+    private static int utf8Length(CharSequence text) {
+        int bytes = text.length();
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= 0x800) {
+                // A surrogate pair is 4 bytes for 2 chars, other chars from here on take 3
+                bytes += Character.isSurrogate(c) ? 1 : 2;
+            } else if (c >= 0x80) {
+                bytes++;
+            }
+        }
+        return bytes;
+    }
+
+    private static void appendField(StringBuilder out, String name, String value) {
+        if (value == null) {
+            return;
+        }
+        out.append(",\"").append(name).append("\":\"");
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append("\\u00").append(Character.forDigit(c >> 4, 16))
+                                .append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+}
@@ -0,0 +1,290 @@
+package com.warakorn.modblocker;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Lock-free detection instrumentation: per-stage counters and latency
+ * histograms, per-channel rule hits, payload bytes inspected and main-thread
+ * time per tick. Exposed through /modblocker metrics, JMX and a Prometheus
+ * text file.
+ */
+final class DetectionMetrics implements DetectionMetricsMXBean {
+
+    enum Stage {
+        CHANNEL_REGISTER, PAYLOAD_SCAN, BRAND_PROBE, JOIN_CHECK, KICK, BEHAVIOR_CHECK;
+
+        String key() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    private static final int MAX_CHANNELS = 256;
+    private static final String OTHER_CHANNELS = "other";
+    private static final String OBJECT_NAME = "com.warakorn.modblocker:type=Metrics";
+
+    private final LatencyHistogram[] stages = new LatencyHistogram[Stage.values().length];
+    private final Map<String, LongAdder> channelHits = new ConcurrentHashMap<>();
+    private final LongAdder payloadBytes = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder probesSent = new LongAdder();
+    private final LongAdder probeResponses = new LongAdder();
+    private final LatencyHistogram mainThread = new LatencyHistogram();
+
+    // Main thread only, time spent in our handlers since the last tick task
+    private long currentTickNanos;
+
+    DetectionMetrics() {
+        for (int i = 0; i < stages.length; i++) {
+            stages[i] = new LatencyHistogram();
+        }
+    }
+
+    void record(Stage stage, long nanos) {
+        stages[stage.ordinal()].record(nanos);
+    }
+
+    void recordPayloadBytes(int bytes) {
+        payloadBytes.add(bytes);
+    }
+
+    /** Counts a rule hit on a channel. Past MAX_CHANNELS distinct names hits go to "other". */
+    void recordChannelHit(String channel) {
+        LongAdder hits = channelHits.get(channel);
+        if (hits == null) {
+            hits = channelHits.size() < MAX_CHANNELS
+                    ? channelHits.computeIfAbsent(channel, key -> new LongAdder())
+                    : channelHits.computeIfAbsent(OTHER_CHANNELS, key -> new LongAdder());
+        }
+        hits.increment();
+    }
+
+    void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    void recordCacheMiss() {
+        cacheMisses.increment();
+    }
+
+    void recordProbesSent(int count) {
+        probesSent.add(count);
+    }
+
+    void recordProbeResponse() {
+        probeResponses.increment();
+    }
+
+    void addMainThread(long nanos) {
+        currentTickNanos += nanos;
+    }
+
+    /** Called by the tick task, closes the previous tick. */
+    void endTick() {
+        mainThread.record(currentTickNanos);
+        currentTickNanos = 0;
+    }
+
+    LatencyHistogram getStage(Stage stage) {
+        return stages[stage.ordinal()];
+    }
+
+    LatencyHistogram getMainThread() {
+        return mainThread;
+    }
+
+    @Override
+    public Map<String, Long> getStageCounts() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            result.put(stage.key(), getStage(stage).getCount());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getStageMeanMicros() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            result.put(stage.key(), getStage(stage).getMeanMicros());
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Double> getStageP99Micros() {
+        Map<String, Double> result = new LinkedHashMap<>();
+        for (Stage stage : Stage.values()) {
+            result.put(stage.key(), getStage(stage).getQuantileMicros(0.99));
+        }
+        return result;
+    }
+
+    @Override
+    public Map<String, Long> getChannelHits() {
+        Map<String, Long> result = new LinkedHashMap<>();
+        channelHits.entrySet().stream()
+                .sorted((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()))
+                .forEach(entry -> result.put(entry.getKey(), entry.getValue().sum()));
+        return result;
+    }
+
+    @Override
+    public long getPayloadBytesInspected() {
+        return payloadBytes.sum();
+    }
+
+    @Override
+    public long getFingerprintCacheHits() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getFingerprintCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    @Override
+    public long getProbesSent() {
+        return probesSent.sum();
+    }
+
+    @Override
+    public long getProbeResponses() {
+        return probeResponses.sum();
+    }
+
+    /** Share of client checks answered from the fingerprint cache, 0 to 1. */
+    double getCacheHitRate() {
+        long hits = cacheHits.sum();
+        long total = hits + cacheMisses.sum();
+        return total == 0 ? 0 : hits / (double) total;
+    }
+
+    @Override
+    public double getMainThreadMeanMicrosPerTick() {
+        return mainThread.getMeanMicros();
+    }
+
+    @Override
+    public double getMainThreadP99MicrosPerTick() {
+        return mainThread.getQuantileMicros(0.99);
+    }
+
+    void registerMBean() throws JMException {
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        if (server.isRegistered(name)) {
+            server.unregisterMBean(name);
+        }
+        server.registerMBean(this, name);
+    }
+
+    void unregisterMBean() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(OBJECT_NAME);
+            if (server.isRegistered(name)) {
+                server.unregisterMBean(name);
+            }
+        } catch (JMException e) {
+            // Already gone
+        }
+    }
+
+    /**
+     * Prometheus text exposition format. Extra counters are appended with a
+     * _total suffix, extra gauges as-is.
+     */
+    String toPrometheus(Map<String, Long> counters, Map<String, Long> gauges) {
+        StringBuilder out = new StringBuilder(4096);
+
+        out.append("# TYPE modblocker_stage_latency_seconds histogram\n");
+        for (Stage stage : Stage.values()) {
+            appendHistogram(out, "modblocker_stage_latency_seconds", "stage=\"" + stage.key() + "\"", getStage(stage));
+        }
+
+        out.append("# TYPE modblocker_main_thread_seconds_per_tick histogram\n");
+        appendHistogram(out, "modblocker_main_thread_seconds_per_tick", null, mainThread);
+
+        out.append("# TYPE modblocker_payload_bytes_inspected_total counter\n");
+        out.append("modblocker_payload_bytes_inspected_total ").append(payloadBytes.sum()).append('\n');
+
+        out.append("# TYPE modblocker_fingerprint_cache_hits_total counter\n");
+        out.append("modblocker_fingerprint_cache_hits_total ").append(cacheHits.sum()).append('\n');
+        out.append("# TYPE modblocker_fingerprint_cache_misses_total counter\n");
+        out.append("modblocker_fingerprint_cache_misses_total ").append(cacheMisses.sum()).append('\n');
+
+        out.append("# TYPE modblocker_probes_sent_total counter\n");
+        out.append("modblocker_probes_sent_total ").append(probesSent.sum()).append('\n');
+        out.append("# TYPE modblocker_probe_responses_total counter\n");
+        out.append("modblocker_probe_responses_total ").append(probeResponses.sum()).append('\n');
+
+        out.append("# TYPE modblocker_channel_hits_total counter\n");
+        for (Map.Entry<String, LongAdder> entry : channelHits.entrySet()) {
+            out.append("modblocker_channel_hits_total{channel=\"").append(escape(entry.getKey())).append("\"} ")
+                    .append(entry.getValue().sum()).append('\n');
+        }
+
+        for (Map.Entry<String, Long> counter : counters.entrySet()) {
+            out.append("# TYPE modblocker_").append(counter.getKey()).append("_total counter\n");
+            out.append("modblocker_").append(counter.getKey()).append("_total ").append(counter.getValue())
+                    .append('\n');
+        }
+        for (Map.Entry<String, Long> gauge : gauges.entrySet()) {
+            out.append("# TYPE modblocker_").append(gauge.getKey()).append(" gauge\n");
+            out.append("modblocker_").append(gauge.getKey()).append(' ').append(gauge.getValue()).append('\n');
+        }
+        return out.toString();
+    }
+
+    /**
+     * Writes through a temp file so a scraper never reads a half-written file.
+     * File systems without atomic rename get a plain replace.
+     */
+    void writePrometheus(Path file, Map<String, Long> counters, Map<String, Long> gauges) throws IOException {
+        Files.createDirectories(file.toAbsolutePath().getParent());
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, toPrometheus(counters, gauges), StandardCharsets.UTF_8);
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private static void appendHistogram(StringBuilder out, String name, String label, LatencyHistogram histogram) {
+        long[] counts = histogram.snapshot();
+        String prefix = label == null ? "" : label + ",";
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++) {
+            cumulative += counts[i];
+            String bound = i < LatencyHistogram.BOUNDS.length
+                    ? Double.toString(LatencyHistogram.BOUNDS[i] / 1e9)
+                    : "+Inf";
+            out.append(name).append("_bucket{").append(prefix).append("le=\"").append(bound).append("\"} ")
+                    .append(cumulative).append('\n');
+        }
+        String labels = label == null ? "" : "{" + label + "}";
+        out.append(name).append("_sum").append(labels).append(' ').append(histogram.getSumNanos() / 1e9).append('\n');
+        out.append(name).append("_count").append(labels).append(' ').append(cumulative).append('\n');
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,29 @@
+package com.warakorn.modblocker;
+
+import java.util.Map;
+
+/** JMX view of {@link DetectionMetrics}, registered as com.warakorn.modblocker:type=Metrics. */
+public interface DetectionMetricsMXBean {
+
+    Map<String, Long> getStageCounts();
+
+    Map<String, Double> getStageMeanMicros();
+
+    Map<String, Double> getStageP99Micros();
+
+    Map<String, Long> getChannelHits();
+
+    long getPayloadBytesInspected();
+
+    long getFingerprintCacheHits();
+
+    long getFingerprintCacheMisses();
+
+    long getProbesSent();
+
+    long getProbeResponses();
+
+    double getMainThreadMeanMicrosPerTick();
+
+    double getMainThreadP99MicrosPerTick();
+}
@@ -0,0 +1,47 @@
+package com.warakorn.modblocker;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Global detection counters. Per-mod counts are keyed by rule name, so the
+ * map can never grow past the size of the blocked-mods list.
+ */
+final class DetectionStats {
+
+    private final LongAdder detections = new LongAdder();
+    private final LongAdder kicks = new LongAdder();
+    private final Map<String, LongAdder> perMod = new ConcurrentHashMap<>();
+
+    void recordDetection(String rule) {
+        detections.increment();
+        perMod.computeIfAbsent(rule, key -> new LongAdder()).increment();
+    }
+
+    void recordKick() {
+        kicks.increment();
+    }
+
+    long getDetections() {
+        return detections.sum();
+    }
+
+    long getKicks() {
+        return kicks.sum();
+    }
+
+    /** Per-mod counts as "name (count)", most detected first. */
+    List<String> summary() {
+        List<Map.Entry<String, LongAdder>> entries = new ArrayList<>(perMod.entrySet());
+        entries.sort((a, b) -> Long.compare(b.getValue().sum(), a.getValue().sum()));
+
+        List<String> result = new ArrayList<>(entries.size());
+        for (Map.Entry<String, LongAdder> entry : entries) {
+            result.add(entry.getKey() + " (" + entry.getValue().sum() + ")");
+        }
+        return result;
+    }
+}
@@ -0,0 +1,50 @@
+package com.warakorn.modblocker;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU from client fingerprint (channel set plus brand) to the verdict
+ * those rules gave it, so players on the same modpack are resolved with one
+ * lookup. A cache belongs to one rule set and is replaced with it on reload.
+ */
+final class FingerprintCache {
+
+    /** Outcome of a full client evaluation. A null rule means nothing was blocked. */
+    record Result(String event, String channel, String rule, String reason, boolean modded) {
+
+        boolean blocked() {
+            return rule != null;
+        }
+    }
+
+    private final Map<Long, Result> entries;
+
+    FingerprintCache(int maxSize) {
+        int limit = Math.max(16, maxSize);
+        this.entries = new LinkedHashMap<>(Math.min(limit, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Result> eldest) {
+                return size() > limit;
+            }
+        };
+    }
+
+    Result get(long fingerprint) {
+        synchronized (entries) {
+            return entries.get(fingerprint);
+        }
+    }
+
+    void put(long fingerprint, Result result) {
+        synchronized (entries) {
+            entries.put(fingerprint, result);
+        }
+    }
+
+    int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.warakorn.modblocker;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-player limits on channel registrations and inspected plugin messages,
+ * per connection while the client is still in the configuration phase.
+ * The token buckets are primitive fields on the session. The first time a
+ * client crosses a limit the caller turns it into a flood detection; after
+ * that everything the client sends is dropped before any logging, matching
+ * or copying. Safe to call from any thread.
+ */
+final class FloodGuard {
+
+    enum Decision {
+        ALLOW(null),
+        DROP(null),
+        TOO_MANY_CHANNELS("too many channels"),
+        REGISTRATION_FLOOD("channel registration flood"),
+        MESSAGE_FLOOD("plugin message flood");
+
+        private final String reason;
+
+        Decision(String reason) {
+            this.reason = reason;
+        }
+
+        /** True for the one decision per session that should produce a verdict. */
+        boolean isFlood() {
+            return reason != null;
+        }
+
+        String reason() {
+            return reason;
+        }
+    }
+
+    /** Limits from flood-protection in config.yml. */
+    record Limits(boolean enabled, double registrationsPerSecond, double registrationBurst,
+            double messagesPerSecond, double messageBurst, int maxChannels) {
+
+        static final Limits DISABLED = new Limits(false, 0, 0, 0, 0, Integer.MAX_VALUE);
+
+        static Limits parse(ConfigurationSection config) {
+            return new Limits(
+                    config.getBoolean("flood-protection.enabled", true),
+                    config.getDouble("flood-protection.registrations-per-second", 32),
+                    Math.max(1, config.getDouble("flood-protection.registration-burst", 512)),
+                    config.getDouble("flood-protection.messages-per-second", 64),
+                    Math.max(1, config.getDouble("flood-protection.message-burst", 256)),
+                    Math.max(1, config.getInt("flood-protection.max-channels", 1024)));
+        }
+    }
+
+    private volatile Limits limits = Limits.DISABLED;
+    private final LongAdder dropped = new LongAdder();
+
+    void configure(Limits limits) {
+        this.limits = limits;
+    }
+
+    /** Checked before a registered channel is tracked and evaluated. */
+    Decision registration(PlayerSession session, String channel) {
+        Limits current = limits;
+        if (!current.enabled()) {
+            return Decision.ALLOW;
+        }
+        if (session.isFlooded()) {
+            return drop();
+        }
+        if (!session.hasChannel(channel) && session.getChannelCount() >= current.maxChannels()) {
+            return flood(session, Decision.TOO_MANY_CHANNELS);
+        }
+        if (!session.tryAcquireRegistration(System.nanoTime(), current.registrationsPerSecond(),
+                current.registrationBurst())) {
+            return flood(session, Decision.REGISTRATION_FLOOD);
+        }
+        return Decision.ALLOW;
+    }
+
+    /** Checked before a plugin message is logged or scanned. */
+    Decision message(PlayerSession session) {
+        Limits current = limits;
+        if (!current.enabled()) {
+            return Decision.ALLOW;
+        }
+        if (session.isFlooded()) {
+            return drop();
+        }
+        if (!session.tryAcquireMessage(System.nanoTime(), current.messagesPerSecond(), current.messageBurst())) {
+            return flood(session, Decision.MESSAGE_FLOOD);
+        }
+        return Decision.ALLOW;
+    }
+
+    long getDropped() {
+        return dropped.sum();
+    }
+
+    private Decision drop() {
+        dropped.increment();
+        return Decision.DROP;
+    }
+
+    private Decision flood(PlayerSession session, Decision decision) {
+        dropped.increment();
+        return session.markFlooded() ? decision : Decision.DROP;
+    }
+}
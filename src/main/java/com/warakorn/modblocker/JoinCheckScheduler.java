@@ -0,0 +1,174 @@
+package com.warakorn.modblocker;
+
+import java.util.List;
+
+/**
+ * Hashed timing wheel for the join check stages, driven by the plugin's
+ * tick task. Due entries are moved to a ready list and run within a
+ * per-tick time budget; whatever does not fit is run first on the next tick.
+ * All methods must be called from the main thread.
+ */
+final class JoinCheckScheduler {
+
+    interface StageRunner {
+        void run(PlayerSession session, JoinCheckStage stage, boolean last);
+    }
+
+    static final class Entry {
+        private final PlayerSession session;
+        private int stage;
+        private long dueTick;
+        private Entry prev;
+        private Entry next;
+        private boolean ready;
+        private boolean linked;
+
+        private Entry(PlayerSession session) {
+            this.session = session;
+        }
+    }
+
+    private static final int SLOTS = 512;
+    private static final int MASK = SLOTS - 1;
+
+    private final Entry[] wheel = new Entry[SLOTS];
+    private Entry readyHead;
+    private Entry readyTail;
+    private long currentTick;
+    private int pending;
+
+    private volatile List<JoinCheckStage> stages = JoinCheckStage.DEFAULTS;
+    private volatile long tickBudgetNanos = 2_000_000L;
+
+    void configure(List<JoinCheckStage> stages, long tickBudgetNanos) {
+        this.stages = stages;
+        this.tickBudgetNanos = Math.max(100_000L, tickBudgetNanos);
+    }
+
+    int getPending() {
+        return pending;
+    }
+
+    /** Schedules the first stage, replacing anything still queued for this session. */
+    void schedule(PlayerSession session) {
+        cancel(session);
+        Entry entry = new Entry(session);
+        session.setJoinCheck(entry);
+        pending++;
+        insert(entry, stages.get(0).delay());
+    }
+
+    void cancel(PlayerSession session) {
+        Entry entry = session.getJoinCheck();
+        if (entry == null) {
+            return;
+        }
+        session.setJoinCheck(null);
+        if (entry.linked) {
+            unlink(entry);
+            pending--;
+        }
+    }
+
+    void tick(StageRunner runner) {
+        long now = ++currentTick;
+
+        // Move this tick's cohort to the ready list, later rounds stay in the slot
+        int slot = (int) (now & MASK);
+        Entry entry = wheel[slot];
+        while (entry != null) {
+            Entry following = entry.next;
+            if (entry.dueTick <= now) {
+                unlink(entry);
+                appendReady(entry);
+            }
+            entry = following;
+        }
+
+        long deadline = System.nanoTime() + tickBudgetNanos;
+        List<JoinCheckStage> current = stages;
+        while (readyHead != null) {
+            Entry ready = readyHead;
+            unlink(ready);
+
+            int index = ready.stage;
+            boolean last = index >= current.size() - 1;
+            if (index < current.size()) {
+                runner.run(ready.session, current.get(index), last);
+            }
+
+            if (!last && ready.session.getJoinCheck() == ready) {
+                ready.stage = index + 1;
+                insert(ready, current.get(index + 1).delay());
+            } else {
+                if (ready.session.getJoinCheck() == ready) {
+                    ready.session.setJoinCheck(null);
+                }
+                pending--;
+            }
+
+            if (System.nanoTime() >= deadline) {
+                break;
+            }
+        }
+    }
+
+    void clear() {
+        for (int i = 0; i < SLOTS; i++) {
+            for (Entry entry = wheel[i]; entry != null; entry = entry.next) {
+                entry.session.setJoinCheck(null);
+            }
+            wheel[i] = null;
+        }
+        for (Entry entry = readyHead; entry != null; entry = entry.next) {
+            entry.session.setJoinCheck(null);
+        }
+        readyHead = null;
+        readyTail = null;
+        pending = 0;
+    }
+
+    private void insert(Entry entry, long delay) {
+        entry.dueTick = currentTick + Math.max(1L, delay);
+        int slot = (int) (entry.dueTick & MASK);
+        entry.ready = false;
+        entry.linked = true;
+        entry.prev = null;
+        entry.next = wheel[slot];
+        if (wheel[slot] != null) {
+            wheel[slot].prev = entry;
+        }
+        wheel[slot] = entry;
+    }
+
+    private void appendReady(Entry entry) {
+        entry.ready = true;
+        entry.linked = true;
+        entry.next = null;
+        entry.prev = readyTail;
+        if (readyTail != null) {
+            readyTail.next = entry;
+        } else {
+            readyHead = entry;
+        }
+        readyTail = entry;
+    }
+
+    private void unlink(Entry entry) {
+        if (entry.prev != null) {
+            entry.prev.next = entry.next;
+        } else if (entry.ready) {
+            readyHead = entry.next;
+        } else {
+            wheel[(int) (entry.dueTick & MASK)] = entry.next;
+        }
+        if (entry.next != null) {
+            entry.next.prev = entry.prev;
+        } else if (entry.ready) {
+            readyTail = entry.prev;
+        }
+        entry.prev = null;
+        entry.next = null;
+        entry.linked = false;
+    }
+}
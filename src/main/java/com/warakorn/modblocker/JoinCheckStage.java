@@ -0,0 +1,48 @@
+package com.warakorn.modblocker;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * One step of the join check, run {@code delay} ticks after the previous
+ * stage (or after the join for the first one).
+ */
+record JoinCheckStage(long delay, Set<JoinCheckStage.Step> steps) {
+
+    enum Step {
+        BRAND, PROBE, CHANNELS, NEW_MODS
+    }
+
+    static final List<JoinCheckStage> DEFAULTS = List.of(
+            new JoinCheckStage(20L, EnumSet.of(Step.BRAND, Step.PROBE)),
+            new JoinCheckStage(100L, EnumSet.of(Step.PROBE, Step.NEW_MODS)));
+
+    /** Reads join-check.stages, falling back to the defaults when the list is missing or empty. */
+    static List<JoinCheckStage> parse(List<Map<?, ?>> raw) {
+        List<JoinCheckStage> stages = new ArrayList<>();
+        for (Map<?, ?> entry : raw) {
+            Object delay = entry.get("delay");
+            Object steps = entry.get("steps");
+            if (!(delay instanceof Number) || !(steps instanceof List<?> names)) {
+                continue;
+            }
+
+            Set<Step> parsed = EnumSet.noneOf(Step.class);
+            for (Object name : names) {
+                try {
+                    parsed.add(Step.valueOf(String.valueOf(name).trim().toUpperCase(Locale.ROOT).replace('-', '_')));
+                } catch (IllegalArgumentException e) {
+                    // Unknown step, ignore it
+                }
+            }
+            if (!parsed.isEmpty()) {
+                stages.add(new JoinCheckStage(Math.max(1L, ((Number) delay).longValue()), parsed));
+            }
+        }
+        return stages.isEmpty() ? DEFAULTS : List.copyOf(stages);
+    }
+}
@@ -0,0 +1,44 @@
+package com.warakorn.modblocker;
+
+import java.util.HashSet;
+import java.util.Queue;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Verdicts waiting to be applied. Detection threads offer, the tick task
+ * drains everything once per tick on the main thread. A player with several
+ * verdicts in the same batch is only kicked once.
+ */
+final class KickQueue {
+
+    private final Queue<Verdict> pending = new ConcurrentLinkedQueue<>();
+    private final Set<UUID> batch = new HashSet<>();
+
+    void offer(Verdict verdict) {
+        pending.offer(verdict);
+    }
+
+    boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    int drain(Consumer<Verdict> kick) {
+        int applied = 0;
+        Verdict verdict;
+        while ((verdict = pending.poll()) != null) {
+            if (batch.add(verdict.uuid())) {
+                kick.accept(verdict);
+                applied++;
+            }
+        }
+        batch.clear();
+        return applied;
+    }
+
+    void clear() {
+        pending.clear();
+    }
+}
@@ -0,0 +1,80 @@
+package com.warakorn.modblocker;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-bucket latency histogram. Recording is one bucket search over a
+ * small array plus three LongAdder increments, so it is safe to call from
+ * any thread on the hot path.
+ */
+final class LatencyHistogram {
+
+    /** Bucket upper bounds in nanoseconds, the last bucket is +Inf. */
+    static final long[] BOUNDS = {
+            1_000L, 2_500L, 5_000L, 10_000L, 25_000L, 50_000L, 100_000L, 250_000L, 500_000L,
+            1_000_000L, 2_500_000L, 5_000_000L, 10_000_000L, 25_000_000L, 50_000_000L, 100_000_000L
+    };
+
+    private final LongAdder[] buckets = new LongAdder[BOUNDS.length + 1];
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+
+    LatencyHistogram() {
+        for (int i = 0; i < buckets.length; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    void record(long nanos) {
+        int bucket = 0;
+        while (bucket < BOUNDS.length && nanos > BOUNDS[bucket]) {
+            bucket++;
+        }
+        buckets[bucket].increment();
+        count.increment();
+        sum.add(nanos);
+    }
+
+    long getCount() {
+        return count.sum();
+    }
+
+    long getSumNanos() {
+        return sum.sum();
+    }
+
+    double getMeanMicros() {
+        long total = count.sum();
+        return total == 0 ? 0 : sum.sum() / (double) total / 1000.0;
+    }
+
+    /** Counts per bucket, not cumulative. */
+    long[] snapshot() {
+        long[] counts = new long[buckets.length];
+        for (int i = 0; i < buckets.length; i++) {
+            counts[i] = buckets[i].sum();
+        }
+        return counts;
+    }
+
+    /** Upper bound of the bucket holding the given quantile, in microseconds. */
+    double getQuantileMicros(double quantile) {
+        long[] counts = snapshot();
+        long total = 0;
+        for (long value : counts) {
+            total += value;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return i < BOUNDS.length ? BOUNDS[i] / 1000.0 : Double.POSITIVE_INFINITY;
+            }
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+}
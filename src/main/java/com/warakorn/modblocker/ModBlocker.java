@@ -3,94 +3,362 @@ package com.warakorn.modblocker;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerLoginEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.event.player.PlayerRegisterChannelEvent;
+import org.bukkit.plugin.PluginDescriptionFile;
 import org.bukkit.plugin.java.JavaPlugin;
+import org.bukkit.plugin.java.JavaPluginLoader;
+import org.bukkit.plugin.messaging.Messenger;
 import org.bukkit.plugin.messaging.PluginMessageListener;
-import org.bukkit.scheduler.BukkitRunnable;
-
-import java.lang.reflect.Field;
+import org.bukkit.scheduler.BukkitTask;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import javax.management.JMException;
 
 public class ModBlocker extends JavaPlugin implements Listener, PluginMessageListener {
 
-    private Set<String> blockedMods;
-    private Set<String> allowedModLoaders;
-    private boolean kickOnModDetection;
-    private String kickMessage;
-    private Set<UUID> checkedPlayers;
-    private Set<UUID> moddedClients;
-    private Set<String> detectedMods;
+    // A message on a probe channel later than this after the probe is not its answer
+    private static final long PROBE_ANSWER_NANOS = 5_000_000_000L;
+
+    private volatile RuleSnapshot rules = RuleSnapshot.EMPTY;
+    // Incoming channels we currently listen on, main thread only
+    private final Set<String> registeredChannels = new HashSet<>();
+    private final Set<String> outgoingChannels = new HashSet<>();
+    private boolean reloading;
+    private ScanJob scanJob;
+    private long scanBudgetNanos;
+    private SessionRegistry sessions;
+    private DetectionStats stats;
+    private DetectionMetrics metrics;
+    private BukkitTask metricsExport;
+    private DetectionLog detectionLog;
+    private DetectionEngine engine;
+    private KickQueue kickQueue;
+    private JoinCheckScheduler joinChecks;
+    private BehaviorMonitor behavior;
+    private final FloodGuard floodGuard = new FloodGuard();
+    private VerdictStore verdictStore;
+    private PacketInspector packetInspector;
+    private ProtocolLibInterceptor packetInterceptor;
+
+    public ModBlocker() {
+    }
+
+    // Outside a plugin class loader, for the offline load test in src/loadtest
+    ModBlocker(JavaPluginLoader loader, PluginDescriptionFile description, File dataFolder, File file) {
+        super(loader, description, dataFolder, file);
+    }
 
     @Override
     public void onEnable() {
         saveDefaultConfig();
-        loadConfigValues();
-        checkedPlayers = new HashSet<>();
-        moddedClients = new HashSet<>();
-        detectedMods = new HashSet<>();
+        sessions = new SessionRegistry();
+        stats = new DetectionStats();
+        metrics = new DetectionMetrics();
+        kickQueue = new KickQueue();
+        joinChecks = new JoinCheckScheduler();
+        detectionLog = new DetectionLog(new File(getDataFolder(), "logs"), getLogger(),
+                getConfig().getInt("logging.buffer-size", 8192));
+        engine = new DetectionEngine(
+                Math.max(1, getConfig().getInt("detection.worker-threads", 2)),
+                getConfig().getInt("detection.queue-size", 4096),
+                detectionLog, stats, metrics, this::onVerdict);
+        behavior = new BehaviorMonitor(sessions, engine, detectionLog, metrics);
+        if (getConfig().getBoolean("verdict-store.enabled", true)) {
+            verdictStore = new VerdictStore(new File(getDataFolder(), "verdicts"), getLogger());
+        }
+        applyConfig(getConfig(), RuleSnapshot.load(getConfig()));
+        detectionLog.start();
+        openVerdictStore();
 
         getServer().getPluginManager().registerEvents(this, this);
+        getServer().getPluginManager().registerEvents(behavior, this);
         setupPluginMessageChannels();
+        setupPacketInterceptor();
+
+        // Join checks and verdicts from the detection threads are handled here, once per tick
+        getServer().getScheduler().runTaskTimer(this, this::onTick, 1L, 1L);
+
+        setupMetricsExport();
+
+        // Safety net for sessions whose quit event never arrived
+        getServer().getScheduler().runTaskTimer(this,
+                () -> sessions.retain(uuid -> getServer().getPlayer(uuid) != null), 6000L, 6000L);
 
         getLogger().info("ModBlocker enabled!");
-        getLogger().info("Allowed Mod Loaders: " + String.join(", ", allowedModLoaders));
-        getLogger().info("Blocked Mods: " + String.join(", ", blockedMods));
+        getLogger().info("Allowed Mod Loaders: " + String.join(", ", rules.allowedModLoaders()));
+        getLogger().info("Blocked Mods: " + String.join(", ", rules.blockedMods()));
         getLogger().info("Using aggressive mod detection methods");
     }
 
-    private void loadConfigValues() {
-        reloadConfig();
+    // Main thread. The snapshot is built from the same config, on reload by an async task.
+    private void applyConfig(ConfigurationSection config, RuleSnapshot snapshot) {
+        rules = snapshot;
+        engine.configure(snapshot);
+        joinChecks.configure(JoinCheckStage.parse(config.getMapList("join-check.stages")),
+                (long) (config.getDouble("join-check.tick-budget-ms", 2.0) * 1_000_000L));
+        scanBudgetNanos = Math.max(100_000L, (long) (config.getDouble("scan.tick-budget-ms", 1.0) * 1_000_000L));
+        behavior.configure(BehaviorMonitor.Thresholds.parse(config));
+        floodGuard.configure(FloodGuard.Limits.parse(config));
+
+        detectionLog.configure(
+                DetectionLog.Level.parse(config.getString("logging.level"), DetectionLog.Level.DETECTION),
+                config.getBoolean("log-detections", true),
+                config.getDouble("logging.player-events-per-second", 10),
+                config.getLong("logging.max-file-size-kb", 10240) * 1024L,
+                config.getInt("logging.max-files", 5));
+        if (verdictStore != null) {
+            verdictStore.configure(config.getLong("verdict-store.max-age-hours", 168) * 3_600_000L);
+        }
+    }
 
-        blockedMods = new HashSet<>(getConfig().getStringList("blocked-mods"));
-        allowedModLoaders = new HashSet<>(getConfig().getStringList("allowed-mod-loaders"));
+    /** Parses and compiles the config off the main thread, then swaps it in on the next tick. */
+    private void reloadAsync(CommandSender sender) {
+        reloading = true;
+        File file = new File(getDataFolder(), "config.yml");
+        getServer().getScheduler().runTaskAsynchronously(this, () -> {
+            YamlConfiguration config = new YamlConfiguration();
+            RuleSnapshot snapshot;
+            try {
+                config.load(file);
+                try (InputStream defaults = getResource("config.yml")) {
+                    if (defaults != null) {
+                        config.setDefaults(YamlConfiguration.loadConfiguration(
+                                new InputStreamReader(defaults, StandardCharsets.UTF_8)));
+                    }
+                }
+                snapshot = RuleSnapshot.load(config);
+            } catch (IOException | InvalidConfigurationException | RuntimeException e) {
+                // Keep running on the old rules
+                getServer().getScheduler().runTask(this, () -> {
+                    reloading = false;
+                    sender.sendMessage(ChatColor.RED + "[ModBlocker] Reload failed, keeping the old config: " + e);
+                });
+                return;
+            }
+            getServer().getScheduler().runTask(this, () -> finishReload(sender, config, snapshot));
+        });
+    }
+
+    private void finishReload(CommandSender sender, ConfigurationSection config, RuleSnapshot snapshot) {
+        reloading = false;
+        if (!isEnabled()) {
+            return;
+        }
+        RuleSnapshot previous = rules;
+        applyConfig(config, snapshot);
+        String channels = updateIncomingChannels(snapshot.channels());
+        updateOutgoingChannels(snapshot.probes().outgoingChannels());
+        trackBehavior();
+
+        // Sessions are kept. Only clients the new rules could block are checked again.
+        int rechecked = snapshot.canBlockMoreThan(previous) ? recheckSessions() : 0;
+
+        sender.sendMessage(ChatColor.GREEN + "[ModBlocker] Config reloaded! " + snapshot.matcher().patternCount()
+                + " rules, channels " + channels + ", re-checking " + rechecked + " players");
+    }
 
-        kickOnModDetection = getConfig().getBoolean("kick-on-mod-detection", true);
-        kickMessage = ChatColor.translateAlternateColorCodes('&',
-                getConfig().getString("kick-message", "&cBlocked mods are not allowed on this server!"));
+    // New rules could block clients that already passed. Identical clients share one
+    // evaluation through the new fingerprint cache.
+    private int recheckSessions() {
+        int count = 0;
+        for (PlayerSession session : sessions.all()) {
+            if (session.isDetected()) {
+                continue;
+            }
+            Player player = getServer().getPlayer(session.getUuid());
+            if (player == null || !player.isOnline() || player.hasPermission("modblocker.bypass")) {
+                continue;
+            }
+            engine.checkClient(session);
+            count++;
+        }
+        return count;
+    }
+
+    // Players who were online while behavior monitoring was off
+    private void trackBehavior() {
+        if (!behavior.isEnabled()) {
+            return;
+        }
+        for (PlayerSession session : sessions.all()) {
+            Player player = getServer().getPlayer(session.getUuid());
+            if (player != null && player.isOnline() && !player.hasPermission("modblocker.bypass")) {
+                behavior.track(session);
+            }
+        }
+    }
+
+    private void openVerdictStore() {
+        if (verdictStore == null) {
+            return;
+        }
+        try {
+            verdictStore.open();
+            getLogger().info("Loaded " + verdictStore.size() + " stored verdicts");
+        } catch (IOException e) {
+            getLogger().warning("Failed to open verdict store, rejoins will be fully checked: " + e.getMessage());
+            verdictStore.close();
+            verdictStore = null;
+        }
     }
 
     private void setupPluginMessageChannels() {
-        // Register channels for aggressive mod detection
-        String[] channels = {
-                "fml:handshake", "fml:hs", "fml:login", "fml:play",
-                "fabric:handshake", "fabric:login", "fabric:play",
-                "forge:handshake", "forge:login", "forge:play",
-                "minecraft:brand", "MC|Brand",
-                "journeymap:sync", "journeymap:update", "journeymap:waypoints",
-                "xaero:minimap", "xaero:worldmap", "xaerominimap:main", "xaeroworldmap:main",
-                "voxelmap:main", "voxelmap:update",
-                "litematica:sync", "litematica:update",
-                "schematica:sync", "schematica:update",
-                "wurst:main", "aristois:main", "impact:main",
-                "baritone:settings", "baritone:commands",
-                "5zig:set", "5zig:update",
-                "labymod:main", "labymod:settings",
-                "badlion:mods", "badlion:client"
-        };
+        // Register channels for aggressive mod detection, see detection-channels
+        updateIncomingChannels(rules.channels());
+
+        // Register outgoing channels for sending probes, see probe.channels
+        updateOutgoingChannels(rules.probes().outgoingChannels());
+    }
+
+    private void updateOutgoingChannels(Set<String> wanted) {
+        Messenger messenger = getServer().getMessenger();
+        for (Iterator<String> it = outgoingChannels.iterator(); it.hasNext(); ) {
+            String channel = it.next();
+            if (!wanted.contains(channel)) {
+                messenger.unregisterOutgoingPluginChannel(this, channel);
+                it.remove();
+            }
+        }
+        for (String channel : wanted) {
+            if (outgoingChannels.contains(channel)) {
+                continue;
+            }
+            try {
+                messenger.registerOutgoingPluginChannel(this, channel);
+                outgoingChannels.add(channel);
+            } catch (Exception e) {
+                getLogger().warning("Failed to register outgoing channel " + channel + ": " + e.getMessage());
+            }
+        }
+    }
 
-        for (String channel : channels) {
+    /**
+     * Registers and unregisters only the difference to what we listen on now,
+     * so channels that stay configured never miss a message.
+     */
+    private String updateIncomingChannels(Set<String> wanted) {
+        Messenger messenger = getServer().getMessenger();
+        int removed = 0;
+        for (Iterator<String> it = registeredChannels.iterator(); it.hasNext(); ) {
+            String channel = it.next();
+            if (!wanted.contains(channel)) {
+                messenger.unregisterIncomingPluginChannel(this, channel);
+                it.remove();
+                removed++;
+            }
+        }
+
+        int added = 0;
+        for (String channel : wanted) {
+            if (registeredChannels.contains(channel)) {
+                continue;
+            }
             try {
-                getServer().getMessenger().registerIncomingPluginChannel(this, channel, this);
-                getLogger().info("Registered detection channel: " + channel);
+                messenger.registerIncomingPluginChannel(this, channel, this);
+                registeredChannels.add(channel);
+                added++;
             } catch (Exception e) {
                 // Channel may not register
+                detectionLog.debug(null, "channel-rejected", channel, e.getMessage());
             }
         }
+        detectionLog.info(null, "channels", null, "+" + added + " -" + removed);
+        return "+" + added + "/-" + removed;
+    }
 
-        // Register outgoing channels for sending requests
+    private void setupPacketInterceptor() {
+        if (!getConfig().getBoolean("protocollib.enabled", true)
+                || !getServer().getPluginManager().isPluginEnabled("ProtocolLib")) {
+            getLogger().info("ProtocolLib not in use, inspecting plugin messages through Bukkit");
+            return;
+        }
         try {
-            getServer().getMessenger().registerOutgoingPluginChannel(this, "minecraft:brand");
-            getServer().getMessenger().registerOutgoingPluginChannel(this, "fml:handshake");
-            getServer().getMessenger().registerOutgoingPluginChannel(this, "fabric:handshake");
-        } catch (Exception e) {
-            getLogger().warning("Failed to register outgoing channels");
+            PacketInspector inspector = new PacketInspector(this, engine, metrics);
+            packetInterceptor = new ProtocolLibInterceptor(this, inspector);
+            packetInterceptor.register();
+            packetInspector = inspector;
+            getLogger().info("Inspecting custom payloads at the packet layer via ProtocolLib");
+        } catch (Throwable e) {
+            // Unsupported ProtocolLib version, keep the Bukkit path
+            packetInterceptor = null;
+            getLogger().warning("Failed to hook ProtocolLib, falling back to Bukkit plugin messages: " + e);
+        }
+    }
+
+    // The offline load test feeds configuration and play packets itself, standing in for ProtocolLib
+    PacketInspector inspectPackets() {
+        packetInspector = new PacketInspector(this, engine, metrics);
+        return packetInspector;
+    }
+
+    private void setupMetricsExport() {
+        if (getConfig().getBoolean("metrics.jmx", true)) {
+            try {
+                metrics.registerMBean();
+            } catch (JMException e) {
+                getLogger().warning("Failed to register metrics MBean: " + e.getMessage());
+            }
         }
+
+        String file = getConfig().getString("metrics.prometheus-file", "");
+        if (file == null || file.isEmpty()) {
+            return;
+        }
+        Path path = getDataFolder().toPath().resolve(file);
+        long interval = Math.max(1, getConfig().getLong("metrics.export-interval-seconds", 15)) * 20L;
+        metricsExport = getServer().getScheduler().runTaskTimerAsynchronously(this, () -> {
+            try {
+                metrics.writePrometheus(path, metricCounters(), metricGauges());
+            } catch (IOException e) {
+                getLogger().warning("Failed to write metrics: " + e.getMessage());
+            }
+        }, interval, interval);
+    }
+
+    // Cumulative since the plugin was enabled
+    private Map<String, Long> metricCounters() {
+        Map<String, Long> counters = new LinkedHashMap<>();
+        counters.put("detections", stats.getDetections());
+        counters.put("kicks", stats.getKicks());
+        counters.put("log_dropped", detectionLog.getDropped());
+        counters.put("flood_dropped", floodGuard.getDropped());
+        return counters;
+    }
+
+    private Map<String, Long> metricGauges() {
+        Map<String, Long> gauges = new LinkedHashMap<>();
+        gauges.put("sessions", (long) sessions.size());
+        gauges.put("join_checks_pending", (long) joinChecks.getPending());
+        gauges.put("fingerprint_cache_size", (long) engine.getCacheSize());
+        if (verdictStore != null) {
+            gauges.put("verdict_store_records", (long) verdictStore.size());
+        }
+        return gauges;
     }
 
     @EventHandler
@@ -98,320 +366,438 @@ public class ModBlocker extends JavaPlugin implements Listener, PluginMessageLis
         Player player = event.getPlayer();
         String channel = event.getChannel();
 
-        if (shouldSkipCheck(player))
+        // Registrations are always evaluated, each channel only once per session
+        if (player == null || player.hasPermission("modblocker.bypass"))
             return;
 
-        getLogger().info("Player " + player.getName() + " registered channel: " + channel);
-        checkModChannel(player, channel);
+        long start = System.nanoTime();
+        PlayerSession session = session(player);
+        FloodGuard.Decision flood = floodGuard.registration(session, channel);
+        if (flood == FloodGuard.Decision.ALLOW) {
+            if (session.addChannel(channel)) {
+                detectionLog.debug(session, "register-channel", channel, null);
+                engine.checkChannel(session, channel);
+            }
+        } else if (flood.isFlood()) {
+            onFlood(session, channel, flood);
+        }
+        metrics.addMainThread(System.nanoTime() - start);
     }
 
     @Override
     public void onPluginMessageReceived(String channel, Player player, byte[] message) {
-        if (shouldSkipCheck(player))
-            return;
-
-        getLogger().info("Player " + player.getName() + " sent message on channel: " + channel);
-        checkModChannel(player, channel);
-
-        // Check message content in detail
-        if (message != null && message.length > 0) {
-            checkMessageContent(player, channel, message);
+        long start = System.nanoTime();
+        try {
+            inspectPluginMessage(channel, player, message);
+        } finally {
+            metrics.addMainThread(System.nanoTime() - start);
         }
     }
 
-    private void checkMessageContent(Player player, String channel, byte[] message) {
-        try {
-            String messageStr = new String(message).toLowerCase();
-            getLogger().info("Message content: " + messageStr.substring(0, Math.min(messageStr.length(), 100)));
-
-            // Check if message contains blocked words
-            for (String blockedMod : blockedMods) {
-                if (messageStr.contains(blockedMod.toLowerCase())) {
-                    getLogger().warning("Detected blocked mod in message: " + blockedMod + " on channel: " + channel);
-                    detectedMods.add(blockedMod);
-                    kickPlayer(player, "Mod data: " + blockedMod);
-                    return;
+    private void inspectPluginMessage(String channel, Player player, byte[] message) {
+        // Answers usually arrive after the last stage marked the session checked
+        if (player != null) {
+            correlateProbe(channel, player);
+        }
+        if (shouldSkipCheck(player))
+            return;
+
+        PlayerSession session = session(player);
+        // With ProtocolLib the packet layer already counted this message
+        if (packetInspector == null) {
+            FloodGuard.Decision flood = floodGuard.message(session);
+            if (flood != FloodGuard.Decision.ALLOW) {
+                if (flood.isFlood()) {
+                    onFlood(session, channel, flood);
                 }
+                return;
             }
-        } catch (Exception e) {
-            // Cannot read message
+        }
+        detectionLog.debug(session, "plugin-message", channel, null);
+        if (session.addChannel(channel)) {
+            engine.checkChannel(session, channel);
+        }
+        if (channel.equals("minecraft:brand")) {
+            session.setBrand(PayloadScanner.readString(message, 256));
+        }
+
+        // Check message content in detail, the worker gets its own copy of the bytes.
+        // With ProtocolLib the payload was already scanned at the packet layer.
+        if (packetInspector == null && message != null && message.length > 0) {
+            byte[] snapshot = Arrays.copyOf(message, Math.min(message.length, engine.getMaxInspectBytes()));
+            engine.checkPayload(session, channel, snapshot);
         }
     }
 
     private boolean shouldSkipCheck(Player player) {
         return player == null ||
                 player.hasPermission("modblocker.bypass") ||
-                checkedPlayers.contains(player.getUniqueId());
+                session(player).isChecked();
     }
 
-    private void checkModChannel(Player player, String channel) {
-        String lowerChannel = channel.toLowerCase();
+    private PlayerSession session(Player player) {
+        return sessions.getOrCreate(player.getUniqueId(), player.getName());
+    }
 
-        // Check if it's an allowed mod loader
-        for (String allowedLoader : allowedModLoaders) {
-            if (lowerChannel.contains(allowedLoader.toLowerCase())) {
-                getLogger().info("Player " + player.getName() + " uses " + allowedLoader + " (ALLOWED)");
-                moddedClients.add(player.getUniqueId());
-                return;
-            }
+    // Called from detection threads
+    private void onVerdict(Verdict verdict) {
+        PlayerSession session = sessions.get(verdict.uuid());
+        if (!rules.kickOnModDetection()) {
+            detectionLog.detection(session, "not-kicked", null, verdict.reason());
+            return;
+        }
+        if (session != null) {
+            session.setChecked(false);
         }
+        kickQueue.offer(verdict);
+    }
 
-        // Check for blocked mods
-        for (String blockedMod : blockedMods) {
-            if (lowerChannel.contains(blockedMod.toLowerCase())) {
-                getLogger().warning("Detected blocked mod: " + channel + " from player: " + player.getName());
-                detectedMods.add(blockedMod);
-                kickPlayer(player, blockedMod); // ส่งเฉพาะชื่อ mod ไม่ใส่ Blocked Mod ซ้ำ
-                return;
-            }
+    // Called from netty threads by the ProtocolLib interceptor in play, true if the packet should be dropped
+    boolean rejectEarly(RuleSnapshot snapshot, UUID uuid, String name, String event, String channel, String blockedMod,
+            String reason, boolean client) {
+        engine.detected(sessions.getOrCreate(uuid, name), event, channel, blockedMod, reason, client);
+        return snapshot.kickOnModDetection();
+    }
+
+    /**
+     * Bypass permission of a connection in the configuration phase, taken at
+     * its login. If the login was not seen it is unknown, unless
+     * protocollib.disconnect-unknown-bypass says otherwise. Netty threads.
+     */
+    Boolean connectionBypass(RuleSnapshot snapshot, InetSocketAddress address) {
+        Boolean bypass = sessions.loginBypass(address);
+        return bypass == null && snapshot.disconnectUnknownBypass() ? Boolean.FALSE : bypass;
+    }
+
+    /** Session for a connection in the configuration phase, null without an address. Netty threads. */
+    PlayerSession connecting(InetSocketAddress address, UUID uuid, String name) {
+        return address != null ? sessions.connecting(address, uuid, name) : null;
+    }
+
+    // Configuration phase, netty threads. The rejection is kept on the connection and applied on join
+    // unless the player may bypass; returns the disconnect message or null.
+    String rejectConnection(RuleSnapshot snapshot, PlayerSession connection, String event, String channel,
+            String blockedMod, String reason, boolean client) {
+        stats.recordDetection(blockedMod);
+        detectionLog.detection(connection, event, channel, blockedMod);
+        if (!snapshot.kickOnModDetection()) {
+            return null;
         }
+        connection.reject(new Verdict(connection.getUuid(), blockedMod, reason, client));
+        return buildKickMessage(reason);
+    }
+
+    /** Message limit for the packet layer, counted per connection during configuration. Netty threads. */
+    FloodGuard.Decision checkMessageFlood(PlayerSession connection, UUID uuid, String name) {
+        return floodGuard.message(connection != null ? connection : sessions.getOrCreate(uuid, name));
+    }
 
-        // Log for debugging
-        getLogger().info("Player " + player.getName() + " channel: " + channel);
+    // Only the first crossing gets here, later messages are dropped by the guard
+    private void onFlood(PlayerSession session, String channel, FloodGuard.Decision decision) {
+        engine.detected(session, "flood", channel, Verdict.FLOOD, "Flood: " + decision.reason(), false);
     }
 
-    private void kickPlayer(Player player, String modName) {
-        if (!kickOnModDetection) {
-            getLogger().warning("Detected blocked mod but not kicking: " + modName + " from " + player.getName());
+    private void onTick() {
+        // Everything our handlers spent since the last run belongs to the previous tick
+        metrics.endTick();
+        long start = System.nanoTime();
+
+        joinChecks.tick(this::runJoinStage);
+        behavior.tick();
+        if (scanJob != null && scanJob.tick(this::scanPlayer)) {
+            scanJob.finish(stats.getDetections());
+            scanJob = null;
+        }
+        if (!kickQueue.isEmpty()) {
+            kickQueue.drain(this::applyKick);
+        }
+        metrics.addMainThread(System.nanoTime() - start);
+    }
+
+    private void applyKick(Verdict verdict) {
+        Player player = getServer().getPlayer(verdict.uuid());
+        if (player == null || !player.isOnline()) {
             return;
         }
+        long start = System.nanoTime();
+        PlayerSession session = session(player);
+        String modName = verdict.reason();
+
+        // Behavior and flood kicks are about this session, replaying them on every rejoin would lock the player out
+        if (verdict.client()) {
+            storeVerdict(player, session, VerdictStore.Outcome.BLOCKED, verdict.rule(), modName);
+        }
+        player.kickPlayer(buildKickMessage(modName));
+        stats.recordKick();
+        detectionLog.detection(session, "kicked", null, modName);
+        metrics.record(DetectionMetrics.Stage.KICK, System.nanoTime() - start);
+    }
 
+    private String buildKickMessage(String modName) {
         // Highlight blocked mod name in gold
         String displayMod = ChatColor.GOLD + modName + ChatColor.RED;
 
-        final String finalMessage = ChatColor.translateAlternateColorCodes('&',
+        return ChatColor.translateAlternateColorCodes('&',
                 "&cYou are not allowed to use &cblocked mods &con this server!\n" +
                         "&eYou may use &6Forge/Fabric&e, but &cblocked mods &eare strictly prohibited.\n" +
                         "&cBlocked Mod: " + displayMod + "\n" +
                         "&7(Reason: Blocked Mod: " + modName + ")");
+    }
 
-        checkedPlayers.remove(player.getUniqueId());
-
-        getServer().getScheduler().runTask(this, () -> {
-            if (player.isOnline()) {
-                player.kickPlayer(finalMessage);
-                getLogger().warning("Successfully kicked " + player.getName() + " for using: " + modName);
-            }
-        });
+    // Permissions still work here, the configuration phase that follows only has a temporary player
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerLogin(PlayerLoginEvent event) {
+        if (packetInspector != null && event.getResult() == PlayerLoginEvent.Result.ALLOWED) {
+            sessions.login(event.getAddress(), event.getPlayer().hasPermission("modblocker.bypass"));
+        }
     }
 
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
-        Player player = event.getPlayer();
+        long start = System.nanoTime();
+        try {
+            startSession(event.getPlayer());
+        } finally {
+            metrics.addMainThread(System.nanoTime() - start);
+        }
+    }
 
-        // Remove player from checkedPlayers every time they join
-        checkedPlayers.remove(player.getUniqueId());
-        moddedClients.remove(player.getUniqueId());
+    private void startSession(Player player) {
 
-        getLogger().info("Player " + player.getName() + " joined - starting mod detection...");
+        // Start a fresh session every time they join
+        PlayerSession session = sessions.start(player.getUniqueId(), player.getName());
+        PlayerSession connection = sessions.joined(player.getAddress());
+        boolean bypass = player.hasPermission("modblocker.bypass");
+        // Sent during configuration, before any plugin message listener sees the player
+        session.setBrand(player.getClientBrandName());
 
-        // Start aggressive detection
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (checkedPlayers.contains(player.getUniqueId())) {
-                    getLogger().info("Player " + player.getName() + " already checked, skipping...");
-                    return;
-                }
+        detectionLog.info(session, "join", null, null);
 
-                getLogger().info("Starting aggressive mod check for " + player.getName());
-
-                // Method 1: Aggressive client brand detection
-                aggressiveClientDetection(player);
+        // Bypassed players are not checked at all, whatever the packet layer saw during configuration
+        if (bypass) {
+            return;
+        }
 
-                // Method 2: Force mod check requests
-                forceModCheck(player);
+        // Rejected at the packet layer during configuration, decided here where permissions are known
+        if (connection != null && connection.getRejection() != null) {
+            session.markDetected();
+            kickQueue.offer(connection.getRejection().forPlayer(session.getUuid()));
+            return;
+        }
 
-                // Method 3: Check currently registered channels
-                checkExistingChannels(player);
+        behavior.track(session);
 
-                // Add delayed check for slow-loading mods
-                delayedModCheck(player);
+        // Clients that register during configuration already have their channels here,
+        // everyone else is looked up again when the first stage runs
+        if (!player.getListeningPluginChannels().isEmpty() && applyStoredVerdict(player, session)) {
+            return;
+        }
 
-                // Mark as being checked
-                checkedPlayers.add(player.getUniqueId());
-            }
-        }.runTaskLater(this, 20L); // Wait 1 second
+        // Stages run from the tick task, see join-check.stages
+        joinChecks.schedule(session);
     }
 
-    // Add delayed check for slow-loading mods
-    private void delayedModCheck(Player player) {
-        new BukkitRunnable() {
-            @Override
-            public void run() {
-                if (!player.isOnline() || checkedPlayers.contains(player.getUniqueId())) {
-                    return;
-                }
+    @EventHandler
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        PlayerSession session = sessions.remove(event.getPlayer().getUniqueId());
+        if (session != null) {
+            joinChecks.cancel(session);
+            behavior.untrack(session);
+        }
+    }
 
-                getLogger().info("Delayed mod check for " + player.getName());
+    private void runJoinStage(PlayerSession session, JoinCheckStage stage, boolean last) {
+        Player player = getServer().getPlayer(session.getUuid());
+        if (player == null || !player.isOnline()) {
+            joinChecks.cancel(session);
+            return;
+        }
+        if (session.isChecked()) {
+            detectionLog.debug(session, "already-checked", null, null);
+            joinChecks.cancel(session);
+            return;
+        }
 
-                // Check channels again
-                checkExistingChannels(player);
+        if (applyStoredVerdict(player, session)) {
+            return;
+        }
 
-                // Send check requests again
-                forceModCheck(player);
+        detectionLog.info(session, "join-check", null, stage.steps().toString());
 
-                // Check for new mods
-                detectNewMods(player);
+        long start = System.nanoTime();
+        for (JoinCheckStage.Step step : stage.steps()) {
+            switch (step) {
+                case BRAND -> aggressiveClientDetection(player);
+                case PROBE -> forceModCheck(player);
+                case CHANNELS -> checkExistingChannels(player);
+                case NEW_MODS -> detectNewMods(player);
             }
-        }.runTaskLater(this, 100L); // Wait 5 more seconds
+        }
+        metrics.record(DetectionMetrics.Stage.JOIN_CHECK, System.nanoTime() - start);
+
+        // Mark as checked once the last stage has run
+        if (last) {
+            session.setChecked(true);
+            // A detection still in flight overwrites this from applyKick
+            if (!session.isDetected()) {
+                storeVerdict(player, session,
+                        session.isModded() ? VerdictStore.Outcome.MODDED : VerdictStore.Outcome.CLEAN, null, null);
+            }
+        }
     }
 
-    private void detectNewMods(Player player) {
-        try {
-            Set<String> currentChannels = player.getListeningPluginChannels();
-            getLogger()
-                    .info("Delayed check - " + player.getName() + " now has " + currentChannels.size() + " channels");
-
-            for (String channel : currentChannels) {
-                checkModChannel(player, channel);
+    // Same client under the same rules as last time, reuse the verdict instead of probing again
+    private boolean applyStoredVerdict(Player player, PlayerSession session) {
+        if (verdictStore == null) {
+            return false;
+        }
+        VerdictStore.Entry entry = verdictStore.lookup(session.getUuid());
+        if (entry == null || entry.ruleHash() != engine.getMatcher().ruleHash()) {
+            return false;
+        }
+        Set<String> channels = player.getListeningPluginChannels();
+        if (entry.fingerprint() != ClientFingerprint.of(channels, session.getBrand())) {
+            return false;
+        }
+        if (entry.outcome() == VerdictStore.Outcome.BLOCKED) {
+            if (!rules.kickOnModDetection() || entry.rule() == null || entry.reason() == null) {
+                return false;
             }
-
-            // If no blocked mods found, log it
-            if (currentChannels.size() > 2 && !detectedMods.contains(player.getUniqueId())) {
-                getLogger()
-                        .info(player.getName() + " has mods but none blocked: " + String.join(", ", currentChannels));
+            session.markDetected();
+            stats.recordDetection(entry.rule());
+            detectionLog.detection(session, "stored-verdict", null, entry.rule());
+            kickQueue.offer(new Verdict(session.getUuid(), entry.rule(), entry.reason(), true));
+        } else {
+            if (entry.outcome() == VerdictStore.Outcome.MODDED) {
+                session.markModded();
             }
+            detectionLog.info(session, "stored-verdict", null, entry.outcome().name().toLowerCase(Locale.ROOT));
+        }
+
+        session.addNewChannels(channels);
+        session.setChecked(true);
+        joinChecks.cancel(session);
+        return true;
+    }
 
+    private void storeVerdict(Player player, PlayerSession session, VerdictStore.Outcome outcome, String rule,
+            String reason) {
+        if (verdictStore != null) {
+            verdictStore.record(session.getUuid(),
+                    ClientFingerprint.of(player.getListeningPluginChannels(), session.getBrand()),
+                    engine.getMatcher().ruleHash(), outcome, rule, reason);
+        }
+    }
+
+    private void detectNewMods(Player player) {
+        try {
+            PlayerSession session = session(player);
+            engine.checkChannels(session, session.addNewChannels(player.getListeningPluginChannels()), true);
         } catch (Exception e) {
-            getLogger().warning("Delayed mod check failed for " + player.getName());
+            detectionLog.info(session(player), "check-failed", null, "delayed: " + e);
         }
     }
 
     private void aggressiveClientDetection(Player player) {
         try {
-            getLogger().info("Aggressive client detection for " + player.getName());
-
-            // Method 1: Check client brand
-            String clientBrand = getClientBrand(player);
-            if (clientBrand != null && !clientBrand.equals("vanilla")) {
-                getLogger().info("Player " + player.getName() + " client brand: " + clientBrand);
-                moddedClients.add(player.getUniqueId());
-
-                // Check brand against blocked list
-                for (String blockedMod : blockedMods) {
-                    if (clientBrand.toLowerCase().contains(blockedMod.toLowerCase())) {
-                        getLogger().warning("Detected blocked mod in client brand: " + clientBrand);
-                        detectedMods.add(blockedMod);
-                        kickPlayer(player, "Client Brand: " + blockedMod);
-                        return;
-                    }
-                }
-            }
+            PlayerSession session = session(player);
+            detectionLog.debug(session, "client-detection", null, null);
 
-            // Method 2: Deep reflection detection
-            detectModsViaReflection(player);
+            // Catch up on channels registered before we were listening.
+            // Matching happens on the detection threads.
+            session.addNewChannels(player.getListeningPluginChannels());
+            engine.checkClient(session);
 
         } catch (Exception e) {
-            getLogger().warning("Aggressive detection failed for " + player.getName() + ": " + e.getMessage());
+            detectionLog.info(session(player), "check-failed", null, "aggressive: " + e);
         }
     }
 
-    private String getClientBrand(Player player) {
+    // Probes are sent once per session and only on channels the client registered,
+    // so a later probe stage only reaches channels registered since the first one
+    private void forceModCheck(Player player) {
         try {
-            // Use Bukkit API first
-            if (player.getListeningPluginChannels().size() > 1) {
-                return "modded (multiple channels)";
-            }
-
-            // Use reflection for client brand
-            Object craftPlayer = player.getClass().getMethod("getHandle").invoke(player);
-
-            // Try to find network manager
-            Object playerConnection = getFieldValue(craftPlayer, "c", "b", "playerConnection");
-            if (playerConnection != null) {
-                Object networkManager = getFieldValue(playerConnection, "a", "networkManager");
-                if (networkManager != null) {
-                    return "modded (network manager found)";
+            PlayerSession session = session(player);
+            ProbeSet probes = rules.probes();
+            long sent = session.getProbesSent(probes);
+            long due = 0;
+            for (int i = 0; i < probes.size(); i++) {
+                if ((sent & (1L << i)) == 0 && session.hasChannel(probes.channel(i))) {
+                    due |= 1L << i;
                 }
             }
+            boolean brand = probes.brand() != null && session.markBrandProbed();
+            if (due == 0 && !brand) {
+                return;
+            }
+            detectionLog.debug(session, "force-check", null, Long.bitCount(due) + " probes");
 
-            return "vanilla";
+            // Payloads are encoded once per rule snapshot and shared by every player
+            if (brand) {
+                sendProbe(player, ProbeSet.BRAND, probes.brand());
+            }
+            for (long rest = due; rest != 0; rest &= rest - 1) {
+                sendProbe(player, probes.channel(Long.numberOfTrailingZeros(rest)), probes.payload());
+            }
+            session.markProbesSent(due, System.nanoTime());
+            metrics.recordProbesSent(Long.bitCount(due) + (brand ? 1 : 0));
 
         } catch (Exception e) {
-            return "unknown";
+            detectionLog.info(session(player), "check-failed", null, "force: " + e);
         }
     }
 
-    private void detectModsViaReflection(Player player) {
+    private void sendProbe(Player player, String channel, byte[] payload) {
         try {
-            // Check for already registered mod channels
-            Set<String> channels = player.getListeningPluginChannels();
-            for (String channel : channels) {
-                getLogger().info("Player " + player.getName() + " listening to channel: " + channel);
-                checkModChannel(player, channel);
-            }
-
-            // Check number of channels
-            if (channels.size() > 2) { // More than normal minecraft channels
-                getLogger()
-                        .warning("Player " + player.getName() + " has " + channels.size() + " channels (SUSPICIOUS)");
-                moddedClients.add(player.getUniqueId());
-            }
-
+            player.sendPluginMessage(this, channel, payload);
         } catch (Exception e) {
-            getLogger().warning("Reflection detection failed for " + player.getName());
+            // Channel not supported
+            detectionLog.debug(session(player), "probe-failed", channel, e.getMessage());
         }
     }
 
-    private Object getFieldValue(Object object, String... fieldNames) {
-        for (String fieldName : fieldNames) {
-            try {
-                Field field = object.getClass().getDeclaredField(fieldName);
-                field.setAccessible(true);
-                return field.get(object);
-            } catch (Exception e) {
-                // Try next field
-            }
+    // An answer on a channel we probed means the mod behind it is really there
+    private void correlateProbe(String channel, Player player) {
+        PlayerSession session = sessions.get(player.getUniqueId());
+        if (session == null) {
+            return;
+        }
+        ProbeSet probes = rules.probes();
+        int index = probes.indexOf(channel);
+        long now = System.nanoTime();
+        if (index < 0 || !session.answerProbe(probes, index, now, PROBE_ANSWER_NANOS)) {
+            return;
         }
-        return null;
+        session.markModded();
+        metrics.recordProbeResponse();
+        detectionLog.debug(session, "probe-response", channel,
+                (now - session.getProbeSentNanos(index)) / 1_000_000L + "ms");
     }
 
-    private void forceModCheck(Player player) {
-        try {
-            getLogger().info("Force mod check for " + player.getName());
-
-            // Send brand request
-            try {
-                player.sendPluginMessage(this, "minecraft:brand", "ModBlocker".getBytes());
-            } catch (Exception e) {
-            }
-
-            // Send requests to various mod channels
-            String[] aggressiveChannels = {
-                    "fml:handshake", "fml:hs", "fml:login",
-                    "fabric:handshake", "fabric:login",
-                    "forge:handshake", "forge:login",
-                    "journeymap:sync", "xaero:minimap", "voxelmap:main"
-            };
-
-            for (String channel : aggressiveChannels) {
-                try {
-                    player.sendPluginMessage(this, channel, "MODBLOCKER_AGGRESSIVE_CHECK".getBytes());
-                } catch (Exception e) {
-                    // Channel not supported
-                }
-            }
-
-            getLogger().info("Force mod check completed for " + player.getName());
-
-        } catch (Exception e) {
-            getLogger().warning("Force mod check failed for " + player.getName());
+    private boolean scanPlayer(UUID uuid, ScanJob.Filter filter) {
+        Player player = getServer().getPlayer(uuid);
+        if (player == null || !player.isOnline() || player.hasPermission("modblocker.bypass")) {
+            return false;
+        }
+        PlayerSession session = session(player);
+        boolean matches = switch (filter) {
+            case ALL -> true;
+            case UNCHECKED -> !session.isChecked();
+            case MODDED -> session.isModded();
+        };
+        if (matches) {
+            aggressiveClientDetection(player);
         }
+        return matches;
     }
 
     private void checkExistingChannels(Player player) {
         try {
-            // Check channels the player has already registered
-            Set<String> currentChannels = player.getListeningPluginChannels();
-            getLogger().info(player.getName() + " currently listening to " + currentChannels.size() + " channels");
-
-            for (String channel : currentChannels) {
-                checkModChannel(player, channel);
-            }
-
+            // Fallback poll, only channels that no registration event told us about are evaluated
+            PlayerSession session = session(player);
+            engine.checkChannels(session, session.addNewChannels(player.getListeningPluginChannels()), false);
         } catch (Exception e) {
-            getLogger().warning("Failed to check existing channels for " + player.getName());
+            detectionLog.info(session(player), "check-failed", null, "channels: " + e);
         }
     }
 
@@ -424,26 +810,60 @@ public class ModBlocker extends JavaPlugin implements Listener, PluginMessageLis
                     return true;
                 }
 
-                loadConfigValues();
-                checkedPlayers.clear();
-                moddedClients.clear();
-                detectedMods.clear();
-
-                getServer().getMessenger().unregisterIncomingPluginChannel(this);
-                getServer().getMessenger().unregisterOutgoingPluginChannel(this);
-                setupPluginMessageChannels();
-
-                sender.sendMessage(ChatColor.GREEN + "[ModBlocker] Config and channels reloaded!");
+                if (reloading) {
+                    sender.sendMessage(ChatColor.YELLOW + "[ModBlocker] A reload is already running.");
+                    return true;
+                }
+                sender.sendMessage(ChatColor.YELLOW + "[ModBlocker] Reloading config...");
+                reloadAsync(sender);
                 return true;
 
             } else if (args.length > 0 && args[0].equalsIgnoreCase("status")) {
                 sender.sendMessage(ChatColor.GREEN + "[ModBlocker] Status:");
                 sender.sendMessage(ChatColor.YELLOW + "Detection: Aggressive Mode");
-                sender.sendMessage(ChatColor.YELLOW + "Allowed Loaders: " + String.join(", ", allowedModLoaders));
-                sender.sendMessage(ChatColor.YELLOW + "Blocked Mods: " + blockedMods.size() + " mods");
-                sender.sendMessage(ChatColor.YELLOW + "Checked Players: " + checkedPlayers.size());
-                sender.sendMessage(ChatColor.YELLOW + "Modded Clients: " + moddedClients.size());
-                sender.sendMessage(ChatColor.YELLOW + "Detected Mods: " + String.join(", ", detectedMods));
+                sender.sendMessage(
+                        ChatColor.YELLOW + "Allowed Loaders: " + String.join(", ", rules.allowedModLoaders()));
+                sender.sendMessage(ChatColor.YELLOW + "Blocked Mods: " + rules.blockedMods().size() + " mods");
+                sender.sendMessage(ChatColor.YELLOW + "Listening Channels: " + registeredChannels.size());
+                int checked = 0;
+                int modded = 0;
+                for (PlayerSession session : sessions.all()) {
+                    if (session.isChecked())
+                        checked++;
+                    if (session.isModded())
+                        modded++;
+                }
+                sender.sendMessage(ChatColor.YELLOW + "Checked Players: " + checked);
+                sender.sendMessage(ChatColor.YELLOW + "Modded Clients: " + modded);
+                sender.sendMessage(ChatColor.YELLOW + "Detections: " + stats.getDetections() + " (kicked " + stats.getKicks() + ")");
+                sender.sendMessage(ChatColor.YELLOW + "Detected Mods: " + String.join(", ", stats.summary()));
+                sender.sendMessage(ChatColor.YELLOW + "Stored Verdicts: "
+                        + (verdictStore != null ? verdictStore.size() : "disabled"));
+                return true;
+
+            } else if (args.length > 0 && args[0].equalsIgnoreCase("metrics")) {
+                sender.sendMessage(ChatColor.GREEN + "[ModBlocker] Metrics:");
+                for (DetectionMetrics.Stage stage : DetectionMetrics.Stage.values()) {
+                    LatencyHistogram histogram = metrics.getStage(stage);
+                    sender.sendMessage(ChatColor.YELLOW + stage.key() + ": " + histogram.getCount()
+                            + " (mean " + formatMicros(histogram.getMeanMicros())
+                            + ", p50 " + formatMicros(histogram.getQuantileMicros(0.5))
+                            + ", p99 " + formatMicros(histogram.getQuantileMicros(0.99)) + ")");
+                }
+                LatencyHistogram tick = metrics.getMainThread();
+                sender.sendMessage(ChatColor.YELLOW + "Main thread per tick: mean " + formatMicros(tick.getMeanMicros())
+                        + ", p99 " + formatMicros(tick.getQuantileMicros(0.99)));
+                sender.sendMessage(ChatColor.YELLOW + "Payload bytes inspected: " + metrics.getPayloadBytesInspected());
+                sender.sendMessage(ChatColor.YELLOW + "Fingerprint cache: " + engine.getCacheSize() + " clients, "
+                        + metrics.getFingerprintCacheHits() + " hits / " + metrics.getFingerprintCacheMisses()
+                        + " misses (" + String.format("%.1f%%", metrics.getCacheHitRate() * 100) + ")");
+                sender.sendMessage(ChatColor.YELLOW + "Probes: " + metrics.getProbesSent() + " sent, "
+                        + metrics.getProbeResponses() + " answered");
+                sender.sendMessage(ChatColor.YELLOW + "Pending join checks: " + joinChecks.getPending()
+                        + ", log dropped: " + detectionLog.getDropped());
+                sender.sendMessage(ChatColor.YELLOW + "Channel hits:");
+                metrics.getChannelHits().entrySet().stream().limit(10).forEach(entry ->
+                        sender.sendMessage(ChatColor.GRAY + "  - " + entry.getKey() + ": " + entry.getValue()));
                 return true;
 
             } else if (args.length > 0 && args[0].equalsIgnoreCase("check")) {
@@ -451,11 +871,14 @@ public class ModBlocker extends JavaPlugin implements Listener, PluginMessageLis
                     Player target = getServer().getPlayer(args[1]);
                     if (target != null) {
                         Set<String> channels = target.getListeningPluginChannels();
+                        PlayerSession session = sessions.get(target.getUniqueId());
                         sender.sendMessage(ChatColor.GREEN + "Player " + target.getName() + " status:");
                         sender.sendMessage(
-                                ChatColor.YELLOW + "Checked: " + checkedPlayers.contains(target.getUniqueId()));
+                                ChatColor.YELLOW + "Checked: " + (session != null && session.isChecked()));
+                        sender.sendMessage(
+                                ChatColor.YELLOW + "Modded: " + (session != null && session.isModded()));
                         sender.sendMessage(
-                                ChatColor.YELLOW + "Modded: " + moddedClients.contains(target.getUniqueId()));
+                                ChatColor.YELLOW + "Brand: " + (session != null ? session.getBrand() : null));
                         sender.sendMessage(ChatColor.YELLOW + "Channels: " + channels.size());
                         for (String channel : channels) {
                             sender.sendMessage(ChatColor.GRAY + "  - " + channel);
@@ -469,27 +892,80 @@ public class ModBlocker extends JavaPlugin implements Listener, PluginMessageLis
                 return true;
 
             } else if (args.length > 0 && args[0].equalsIgnoreCase("scan")) {
-                sender.sendMessage(ChatColor.YELLOW + "Scanning all online players...");
-                for (Player online : getServer().getOnlinePlayers()) {
-                    if (!checkedPlayers.contains(online.getUniqueId())) {
-                        aggressiveClientDetection(online);
+                String option = args.length > 1 ? args[1] : "unchecked";
+                if (option.equalsIgnoreCase("cancel")) {
+                    if (scanJob == null) {
+                        sender.sendMessage(ChatColor.YELLOW + "[ModBlocker] No scan is running.");
+                    } else {
+                        scanJob.cancel(sender);
+                        scanJob = null;
                     }
+                    return true;
+                }
+                if (option.equalsIgnoreCase("status")) {
+                    sender.sendMessage(ChatColor.YELLOW + "[ModBlocker] "
+                            + (scanJob != null ? "Scan " + scanJob.describe() : "No scan is running."));
+                    return true;
+                }
+                if (scanJob != null) {
+                    sender.sendMessage(ChatColor.RED + "[ModBlocker] A scan is already running ("
+                            + scanJob.describe() + "), use /modblocker scan cancel");
+                    return true;
+                }
+                ScanJob.Filter filter = ScanJob.Filter.parse(option);
+                if (filter == null) {
+                    sender.sendMessage(ChatColor.RED + "Usage: /modblocker scan [all|unchecked|modded|status|cancel]");
+                    return true;
                 }
-                sender.sendMessage(ChatColor.GREEN + "Scan completed!");
+
+                // Runs from the tick task within scan.tick-budget-ms
+                UUID[] players = getServer().getOnlinePlayers().stream()
+                        .map(Player::getUniqueId)
+                        .toArray(UUID[]::new);
+                scanJob = new ScanJob(sender, filter, players, scanBudgetNanos, stats.getDetections());
+                sender.sendMessage(ChatColor.YELLOW + "Scanning " + players.length + " online players ("
+                        + option.toLowerCase(Locale.ROOT) + ") in the background...");
                 return true;
             }
         }
         return false;
     }
 
+    private static String formatMicros(double micros) {
+        if (Double.isInfinite(micros)) {
+            return ">100ms";
+        }
+        return micros >= 1000 ? String.format("%.1fms", micros / 1000) : String.format("%.0fus", micros);
+    }
+
     @Override
     public void onDisable() {
         getLogger().info("ModBlocker disabled!");
-        checkedPlayers.clear();
-        moddedClients.clear();
-        detectedMods.clear();
+        if (metricsExport != null) {
+            metricsExport.cancel();
+            metricsExport = null;
+        }
+        metrics.unregisterMBean();
+        if (packetInterceptor != null) {
+            packetInterceptor.unregister();
+            packetInterceptor = null;
+        }
+        packetInspector = null;
+        scanJob = null;
+        engine.close();
+        if (verdictStore != null) {
+            verdictStore.close();
+            verdictStore = null;
+        }
+        joinChecks.clear();
+        behavior.clear();
+        kickQueue.clear();
+        sessions.clear();
+        detectionLog.close();
 
         getServer().getMessenger().unregisterIncomingPluginChannel(this);
         getServer().getMessenger().unregisterOutgoingPluginChannel(this);
+        registeredChannels.clear();
+        outgoingChannels.clear();
     }
 }
@@ -0,0 +1,255 @@
+package com.warakorn.modblocker;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.ByteProcessor;
+
+import java.net.InetSocketAddress;
+import java.util.UUID;
+
+/**
+ * Decides what happens to a serverbound custom payload at the packet layer.
+ * Holds no ProtocolLib types: {@link ProtocolLibInterceptor} reads the packet
+ * and applies the result, the offline load test calls it directly.
+ *
+ * The player of the configuration phase cannot answer permission checks, so
+ * the bypass permission comes from the login event. A connection that may
+ * not bypass is disconnected before a player entity, chunks or join events
+ * exist for it. If its login was not seen the rejection is kept on the
+ * connection and the join decides. In play the verdict goes through the
+ * normal kick queue.
+ */
+final class PacketInspector {
+
+    static final String REGISTER = "minecraft:register";
+    static final String UNREGISTER = "minecraft:unregister";
+
+    enum Action {
+        PASS, DROP, DISCONNECT
+    }
+
+    /** What to do with the packet, the message is only set for {@link Action#DISCONNECT}. */
+    record Result(Action action, String message) {
+        static final Result PASS = new Result(Action.PASS, null);
+        static final Result DROP = new Result(Action.DROP, null);
+    }
+
+    private final ModBlocker blocker;
+    private final DetectionEngine engine;
+    private final DetectionMetrics metrics;
+    private final ThreadLocal<Stepper> steppers = ThreadLocal.withInitial(Stepper::new);
+
+    PacketInspector(ModBlocker blocker, DetectionEngine engine, DetectionMetrics metrics) {
+        this.blocker = blocker;
+        this.engine = engine;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Netty threads. {@code permission} is the player's own answer to the
+     * bypass check, null if it could not give one. {@code data} is a ByteBuf,
+     * byte array or brand string, null if the packet could not be read.
+     */
+    Result inspect(boolean configuration, InetSocketAddress address, UUID uuid, String name, Boolean permission,
+            String channel, Object data) {
+        RuleSnapshot snapshot = engine.getRules();
+        Boolean bypass = permission;
+        PlayerSession connection = null;
+        if (configuration) {
+            if (bypass == null) {
+                bypass = blocker.connectionBypass(snapshot, address);
+            }
+            if (Boolean.TRUE.equals(bypass)) {
+                return Result.PASS;
+            }
+            connection = blocker.connecting(address, uuid, name);
+            if (connection == null) {
+                return Result.PASS;
+            }
+        } else if (Boolean.TRUE.equals(bypass) || uuid == null) {
+            return Result.PASS;
+        }
+
+        // Counted before anything is scanned, the first crossing becomes a flood detection
+        FloodGuard.Decision flood = blocker.checkMessageFlood(connection, uuid, name);
+        if (flood != FloodGuard.Decision.ALLOW) {
+            Result result = Result.DROP;
+            if (flood.isFlood()) {
+                result = reject(snapshot, connection, uuid, name, bypass, "flood", null, Verdict.FLOOD,
+                        "Flood: " + flood.reason(), false);
+            }
+            // Unknown bypass: dropping would leave a staff member hanging in configuration, the join decides
+            if (bypass == null) {
+                return Result.PASS;
+            }
+            return result.action() == Action.DISCONNECT ? result : Result.DROP;
+        }
+        // Leaving a channel says nothing about the client, even if the channel is blocked
+        if (UNREGISTER.equals(channel)) {
+            return Result.PASS;
+        }
+
+        RuleMatcher rules = snapshot.matcher();
+        int maxBytes = snapshot.maxInspectBytes();
+        int match = RuleMatcher.NO_MATCH;
+        String detail = null;
+        String kind = null;
+        long start = System.nanoTime();
+
+        if (REGISTER.equals(channel)) {
+            // NUL-separated channel list, each name gets the allowed-first channel rules
+            match = scanChannelList(rules, data, maxBytes);
+            kind = "blocked-channel";
+            metrics.record(DetectionMetrics.Stage.CHANNEL_REGISTER, System.nanoTime() - start);
+        } else {
+            if (channel != null) {
+                int channelMatch = rules.matchChannel(channel);
+                if (channelMatch != RuleMatcher.NO_MATCH && !rules.isAllowed(channelMatch)) {
+                    match = channelMatch;
+                    kind = "blocked-channel";
+                }
+            }
+            if (match == RuleMatcher.NO_MATCH) {
+                match = scanPayload(rules, data, maxBytes);
+                kind = data instanceof String ? "blocked-brand" : "blocked-payload";
+                detail = data instanceof String ? "Client Brand: " : "Mod data: ";
+            }
+            metrics.record(DetectionMetrics.Stage.PAYLOAD_SCAN, System.nanoTime() - start);
+            metrics.recordPayloadBytes(inspectedBytes(data, maxBytes));
+        }
+        if (match == RuleMatcher.NO_MATCH) {
+            return Result.PASS;
+        }
+        if (channel != null) {
+            metrics.recordChannelHit(channel);
+        }
+
+        String blockedMod = rules.pattern(match);
+        String reason = detail != null ? detail + blockedMod : blockedMod;
+        return reject(snapshot, connection, uuid, name, bypass, kind, channel, blockedMod, reason, true);
+    }
+
+    // A connection whose bypass is unknown keeps its packets, the join decides
+    private Result reject(RuleSnapshot snapshot, PlayerSession connection, UUID uuid, String name, Boolean bypass,
+            String kind, String channel, String blockedMod, String reason, boolean client) {
+        if (connection == null) {
+            boolean drop = blocker.rejectEarly(snapshot, uuid, name, kind, channel, blockedMod, reason, client);
+            return drop ? Result.DROP : Result.PASS;
+        }
+        String message = blocker.rejectConnection(snapshot, connection, kind, channel, blockedMod, reason, client);
+        if (message == null || bypass == null) {
+            return Result.PASS;
+        }
+        return new Result(Action.DISCONNECT, message);
+    }
+
+    private int scanChannelList(RuleMatcher rules, Object data, int maxBytes) {
+        Stepper stepper = steppers.get();
+        stepper.reset(rules, true, maxBytes);
+        feed(stepper, data);
+        return stepper.finish();
+    }
+
+    private int scanPayload(RuleMatcher rules, Object data, int maxBytes) {
+        if (data instanceof String brand) {
+            return rules.findBlocked(brand);
+        }
+        if (data instanceof byte[] bytes) {
+            return PayloadScanner.scan(rules, bytes, maxBytes);
+        }
+        if (data instanceof ByteBuf buf && buf.hasArray()) {
+            return PayloadScanner.scan(rules, buf.array(), buf.arrayOffset() + buf.readerIndex(),
+                    buf.readableBytes(), maxBytes);
+        }
+        // Direct buffers are walked byte by byte without framing
+        Stepper stepper = steppers.get();
+        stepper.reset(rules, false, maxBytes);
+        feed(stepper, data);
+        return stepper.finish();
+    }
+
+    private static int inspectedBytes(Object data, int maxBytes) {
+        int length = 0;
+        if (data instanceof ByteBuf buf) {
+            length = buf.readableBytes();
+        } else if (data instanceof byte[] bytes) {
+            length = bytes.length;
+        }
+        return Math.min(length, maxBytes);
+    }
+
+    private static void feed(Stepper stepper, Object data) {
+        if (data instanceof ByteBuf buf) {
+            int length = Math.min(buf.readableBytes(), stepper.remaining);
+            if (length > 0) {
+                buf.forEachByte(buf.readerIndex(), length, stepper);
+            }
+        } else if (data instanceof byte[] bytes) {
+            for (int i = 0, length = Math.min(bytes.length, stepper.remaining); i < length; i++) {
+                if (!stepper.process(bytes[i])) {
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Feeds bytes through the rule automaton. In channel-list mode every NUL
+     * starts a new channel name and an allowed loader clears that name.
+     */
+    private static final class Stepper implements ByteProcessor {
+        private RuleMatcher rules;
+        private boolean channelList;
+        private int remaining;
+        private int state;
+        private boolean allowed;
+        private int blocked;
+        private int result;
+
+        void reset(RuleMatcher rules, boolean channelList, int maxBytes) {
+            this.rules = rules;
+            this.channelList = channelList;
+            this.remaining = maxBytes;
+            this.state = 0;
+            this.allowed = false;
+            this.blocked = RuleMatcher.NO_MATCH;
+            this.result = RuleMatcher.NO_MATCH;
+        }
+
+        @Override
+        public boolean process(byte value) {
+            remaining--;
+            if (channelList && value == 0) {
+                return endChannel();
+            }
+            state = rules.next(state, value);
+            if (channelList) {
+                allowed |= rules.allowedAt(state) != RuleMatcher.NO_MATCH;
+                if (blocked == RuleMatcher.NO_MATCH) {
+                    blocked = rules.blockedAt(state);
+                }
+                return true;
+            }
+            result = rules.blockedAt(state);
+            return result == RuleMatcher.NO_MATCH;
+        }
+
+        private boolean endChannel() {
+            if (!allowed && blocked != RuleMatcher.NO_MATCH) {
+                result = blocked;
+                return false;
+            }
+            state = 0;
+            allowed = false;
+            blocked = RuleMatcher.NO_MATCH;
+            return true;
+        }
+
+        int finish() {
+            if (channelList && result == RuleMatcher.NO_MATCH) {
+                endChannel();
+            }
+            rules = null;
+            return result;
+        }
+    }
+}
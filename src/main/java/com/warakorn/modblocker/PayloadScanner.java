@@ -0,0 +1,117 @@
+package com.warakorn.modblocker;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Scans raw plugin message payloads for blocked mods without decoding them
+ * into Strings.
+ *
+ * Channels like minecraft:brand and most mod handshakes send one or more
+ * VarInt-prefixed UTF-8 strings. When the whole payload frames cleanly that
+ * way each string is scanned on its own, so length bytes can never glue two
+ * strings into a false match. Anything else is scanned as raw bytes.
+ */
+final class PayloadScanner {
+
+    private PayloadScanner() {
+    }
+
+    static int scan(RuleMatcher matcher, byte[] payload, int maxBytes) {
+        return payload == null ? RuleMatcher.NO_MATCH : scan(matcher, payload, 0, payload.length, maxBytes);
+    }
+
+    /** Scans {@code payload[offset, offset + length)}, looking at no more than {@code maxBytes} of it. */
+    static int scan(RuleMatcher matcher, byte[] payload, int offset, int length, int maxBytes) {
+        if (length <= 0) {
+            return RuleMatcher.NO_MATCH;
+        }
+
+        int end = offset + length;
+        int limit = offset + Math.min(length, maxBytes);
+        if (!isFramed(payload, offset, limit, end)) {
+            return matcher.findBlocked(payload, offset, limit);
+        }
+
+        int position = offset;
+        while (position < limit) {
+            int size = varIntSize(payload, position, limit);
+            if (size == 0) {
+                // Prefix cut off by the limit
+                break;
+            }
+            int start = position + size;
+            int stringEnd = start + readVarInt(payload, position, limit);
+
+            int match = matcher.findBlocked(payload, start, Math.min(stringEnd, limit));
+            if (match != RuleMatcher.NO_MATCH) {
+                return match;
+            }
+            position = stringEnd;
+        }
+        return RuleMatcher.NO_MATCH;
+    }
+
+    /**
+     * Decodes the leading VarInt-prefixed string, as sent on minecraft:brand.
+     * Returns null if the payload is not framed that way or the string is
+     * longer than {@code maxLength} bytes.
+     */
+    static String readString(byte[] payload, int maxLength) {
+        if (payload == null) {
+            return null;
+        }
+        int size = varIntSize(payload, 0, payload.length);
+        if (size == 0) {
+            return null;
+        }
+        int length = readVarInt(payload, 0, payload.length);
+        if (length < 0 || length > maxLength || length > payload.length - size) {
+            return null;
+        }
+        return new String(payload, size, length, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * True when {@code data[offset, limit)} is a sequence of VarInt-prefixed
+     * strings, empty ones included. Nothing past {@code limit} is read; when
+     * the payload goes on to {@code end}, a last string or prefix cut off by
+     * the limit still counts.
+     */
+    static boolean isFramed(byte[] data, int offset, int limit, int end) {
+        int position = offset;
+        while (position < limit) {
+            int size = varIntSize(data, position, limit);
+            if (size == 0) {
+                return limit < end && limit - position < 5;
+            }
+            int length = readVarInt(data, position, limit);
+            if (length < 0 || length > end - position - size) {
+                return false;
+            }
+            position += size + length;
+        }
+        return true;
+    }
+
+    /** Number of bytes taken by the VarInt at {@code position}, or 0 if it is malformed. */
+    static int varIntSize(byte[] data, int position, int end) {
+        for (int i = 0; i < 5 && position + i < end; i++) {
+            if ((data[position + i] & 0x80) == 0) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    static int readVarInt(byte[] data, int position, int end) {
+        int value = 0;
+        for (int i = 0; i < 5 && position + i < end; i++) {
+            byte b = data[position + i];
+            value |= (b & 0x7F) << (7 * i);
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        return value;
+    }
+}
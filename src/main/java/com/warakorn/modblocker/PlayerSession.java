@@ -0,0 +1,283 @@
+package com.warakorn.modblocker;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Detection state for one online player. Created on join (or on the first
+ * channel event) and dropped from the {@link SessionRegistry} on quit.
+ */
+final class PlayerSession {
+
+    private final UUID uuid;
+    private final String name;
+    private final long startedNanos = System.nanoTime();
+    private volatile boolean checked;
+    private volatile boolean modded;
+    private volatile boolean detected;
+    private volatile Verdict rejection;
+    private volatile String brand;
+    private volatile boolean flooded;
+
+    // Channels that have already been handed to the detection engine
+    private final Set<String> channels = ConcurrentHashMap.newKeySet();
+
+    // Main thread only
+    private JoinCheckScheduler.Entry joinCheck;
+    private BehaviorMonitor.Samples behavior;
+
+    // Probes, main thread only. Bit i stands for channel i of probeSet.
+    private ProbeSet probeSet;
+    private long probesSent;
+    private long probesAnswered;
+    // Probe channels the client sent on before it was probed there, its messages on them prove nothing
+    private long probeTraffic;
+    private long[] probeSentNanos;
+    private boolean brandProbed;
+
+    // Per-player token bucket for the detection log
+    private double logTokens = -1;
+    private long logRefillNanos;
+
+    // Flood protection buckets, see FloodGuard
+    private double registrationTokens = -1;
+    private long registrationRefillNanos;
+    private double messageTokens = -1;
+    private long messageRefillNanos;
+
+    PlayerSession(UUID uuid, String name) {
+        this.uuid = uuid;
+        this.name = name;
+    }
+
+    UUID getUuid() {
+        return uuid;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    long getStartedNanos() {
+        return startedNanos;
+    }
+
+    boolean isChecked() {
+        return checked;
+    }
+
+    void setChecked(boolean checked) {
+        this.checked = checked;
+    }
+
+    boolean isModded() {
+        return modded;
+    }
+
+    void markModded() {
+        modded = true;
+    }
+
+    boolean isDetected() {
+        return detected;
+    }
+
+    void markDetected() {
+        detected = true;
+    }
+
+    /** Brand the client sent on minecraft:brand, if any. */
+    String getBrand() {
+        return brand;
+    }
+
+    void setBrand(String brand) {
+        this.brand = brand;
+    }
+
+    /** Kick reason from a packet-layer detection during configuration, applied on join. */
+    Verdict getRejection() {
+        return rejection;
+    }
+
+    /** Keeps the first rejection, later ones are about the same connection. */
+    synchronized void reject(Verdict verdict) {
+        if (rejection == null) {
+            rejection = verdict;
+        }
+    }
+
+    /** True if the channel was not seen before and still needs to be evaluated. */
+    boolean addChannel(String channel) {
+        return channels.add(channel);
+    }
+
+    /** Channels from {@code current} that were not seen before, now marked as seen. */
+    List<String> addNewChannels(Collection<String> current) {
+        List<String> added = null;
+        for (String channel : current) {
+            if (channels.add(channel)) {
+                if (added == null) {
+                    added = new ArrayList<>();
+                }
+                added.add(channel);
+            }
+        }
+        return added != null ? added : List.of();
+    }
+
+    boolean hasChannel(String channel) {
+        return channels.contains(channel);
+    }
+
+    int getChannelCount() {
+        return channels.size();
+    }
+
+    List<String> getChannels() {
+        return List.copyOf(channels);
+    }
+
+    JoinCheckScheduler.Entry getJoinCheck() {
+        return joinCheck;
+    }
+
+    void setJoinCheck(JoinCheckScheduler.Entry joinCheck) {
+        this.joinCheck = joinCheck;
+    }
+
+    /** Behavior samples, null while the player is not monitored. */
+    BehaviorMonitor.Samples getBehavior() {
+        return behavior;
+    }
+
+    void setBehavior(BehaviorMonitor.Samples behavior) {
+        this.behavior = behavior;
+    }
+
+    /** Probes from {@code probes} already sent to this client. Starts over when the probe set changes. */
+    long getProbesSent(ProbeSet probes) {
+        if (probes != probeSet) {
+            probeSet = probes;
+            probesSent = 0;
+            probesAnswered = 0;
+            probeTraffic = 0;
+            probeSentNanos = null;
+            brandProbed = false;
+        }
+        return probesSent;
+    }
+
+    void markProbesSent(long mask, long now) {
+        if (mask == 0) {
+            return;
+        }
+        if (probeSentNanos == null) {
+            probeSentNanos = new long[probeSet.size()];
+        }
+        probesSent |= mask;
+        for (long rest = mask; rest != 0; rest &= rest - 1) {
+            probeSentNanos[Long.numberOfTrailingZeros(rest)] = now;
+        }
+    }
+
+    /** True the first time only, the brand probe goes out once per session. */
+    boolean markBrandProbed() {
+        if (brandProbed) {
+            return false;
+        }
+        brandProbed = true;
+        return true;
+    }
+
+    /**
+     * True if a message on probe channel {@code index} answers its probe: the
+     * first one within {@code window} nanos of the probe, on a channel the
+     * client had not sent on before it.
+     */
+    boolean answerProbe(ProbeSet probes, int index, long now, long window) {
+        long bit = 1L << index;
+        getProbesSent(probes);
+        if ((probesSent & bit) == 0) {
+            probeTraffic |= bit;
+            return false;
+        }
+        if ((probesAnswered & bit) != 0 || (probeTraffic & bit) != 0 || now - probeSentNanos[index] > window) {
+            return false;
+        }
+        probesAnswered |= bit;
+        return true;
+    }
+
+    long getProbesAnswered() {
+        return probesAnswered;
+    }
+
+    long getProbeSentNanos(int index) {
+        return probeSentNanos != null ? probeSentNanos[index] : 0;
+    }
+
+    boolean isFlooded() {
+        return flooded;
+    }
+
+    /** True only for the call that flagged the session. */
+    synchronized boolean markFlooded() {
+        if (flooded) {
+            return false;
+        }
+        flooded = true;
+        return true;
+    }
+
+    synchronized boolean tryAcquireLogToken(long now, double perSecond) {
+        if (perSecond <= 0) {
+            return true;
+        }
+        logTokens = refill(logTokens, now - logRefillNanos, perSecond, perSecond);
+        logRefillNanos = now;
+        if (logTokens < 1) {
+            return false;
+        }
+        logTokens--;
+        return true;
+    }
+
+    synchronized boolean tryAcquireRegistration(long now, double perSecond, double burst) {
+        if (perSecond <= 0) {
+            return true;
+        }
+        registrationTokens = refill(registrationTokens, now - registrationRefillNanos, perSecond, burst);
+        registrationRefillNanos = now;
+        if (registrationTokens < 1) {
+            return false;
+        }
+        registrationTokens--;
+        return true;
+    }
+
+    synchronized boolean tryAcquireMessage(long now, double perSecond, double burst) {
+        if (perSecond <= 0) {
+            return true;
+        }
+        messageTokens = refill(messageTokens, now - messageRefillNanos, perSecond, burst);
+        messageRefillNanos = now;
+        if (messageTokens < 1) {
+            return false;
+        }
+        messageTokens--;
+        return true;
+    }
+
+    // A bucket that was never used starts full
+    private static double refill(double tokens, long elapsedNanos, double perSecond, double burst) {
+        if (tokens < 0) {
+            return burst;
+        }
+        return Math.min(burst, tokens + elapsedNanos * perSecond / 1_000_000_000d);
+    }
+}
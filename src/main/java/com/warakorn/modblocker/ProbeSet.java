@@ -0,0 +1,111 @@
+package com.warakorn.modblocker;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Probe messages for the join check, encoded once per rule snapshot and
+ * shared by every player. Each probe channel has a bit index so a session
+ * can track which probes it was sent and which were answered in a long.
+ *
+ * Only the brand probe is a well-formed message. The channel probe is a bare
+ * marker, so channels of the loader handshakes are never probed: Forge,
+ * Fabric and NeoForge disconnect a client that gets a message they cannot
+ * decode on them.
+ */
+final class ProbeSet {
+
+    static final int MAX_CHANNELS = Long.SIZE;
+    static final String BRAND = "minecraft:brand";
+
+    static final ProbeSet EMPTY = new ProbeSet(List.of(), null);
+
+    private static final byte[] PAYLOAD = "MODBLOCKER_AGGRESSIVE_CHECK".getBytes(StandardCharsets.UTF_8);
+    private static final Set<String> HANDSHAKE_NAMESPACES = Set.of("minecraft", "c", "fml", "forge", "neoforge",
+            "fabric");
+
+    private final String[] channels;
+    private final Map<String, Integer> indexes = new HashMap<>();
+    private final byte[] brand;
+
+    private ProbeSet(List<String> channels, byte[] brand) {
+        this.channels = channels.toArray(new String[0]);
+        for (int i = 0; i < this.channels.length; i++) {
+            indexes.put(this.channels[i], i);
+        }
+        this.brand = brand;
+    }
+
+    /**
+     * At most {@link #MAX_CHANNELS} channels, the rest and handshake channels
+     * are ignored. A null brand disables the brand probe.
+     */
+    static ProbeSet of(List<String> channels, String brand) {
+        Set<String> unique = new LinkedHashSet<>();
+        for (String channel : channels) {
+            if (channel != null && !channel.isEmpty() && !isHandshake(channel) && unique.size() < MAX_CHANNELS) {
+                unique.add(channel);
+            }
+        }
+        return new ProbeSet(new ArrayList<>(unique), brand == null || brand.isEmpty() ? null : encodeString(brand));
+    }
+
+    int size() {
+        return channels.length;
+    }
+
+    String channel(int index) {
+        return channels[index];
+    }
+
+    /** Bit index of the probe channel, or -1. */
+    int indexOf(String channel) {
+        Integer index = indexes.get(channel);
+        return index != null ? index : -1;
+    }
+
+    byte[] payload() {
+        return PAYLOAD;
+    }
+
+    /** Server brand as the client reads it, or null if not probed. */
+    byte[] brand() {
+        return brand;
+    }
+
+    /** Outgoing channels these probes are sent on. */
+    Set<String> outgoingChannels() {
+        Set<String> outgoing = new LinkedHashSet<>(List.of(channels));
+        if (brand != null) {
+            outgoing.add(BRAND);
+        }
+        return outgoing;
+    }
+
+    static boolean isHandshake(String channel) {
+        int colon = channel.indexOf(':');
+        return colon > 0 && HANDSHAKE_NAMESPACES.contains(channel.substring(0, colon).toLowerCase(Locale.ROOT));
+    }
+
+    // VarInt length prefix followed by UTF-8, the string format of minecraft:brand
+    private static byte[] encodeString(String value) {
+        byte[] text = value.getBytes(StandardCharsets.UTF_8);
+        byte[] encoded = new byte[text.length + 5];
+        int position = 0;
+        int length = text.length;
+        while ((length & ~0x7F) != 0) {
+            encoded[position++] = (byte) ((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        encoded[position++] = (byte) length;
+        System.arraycopy(text, 0, encoded, position, text.length);
+        return Arrays.copyOf(encoded, position + text.length);
+    }
+}
@@ -0,0 +1,186 @@
+package com.warakorn.modblocker;
+
+import com.comphenix.protocol.PacketType;
+import com.comphenix.protocol.ProtocolLibrary;
+import com.comphenix.protocol.ProtocolManager;
+import com.comphenix.protocol.events.ListenerPriority;
+import com.comphenix.protocol.events.PacketAdapter;
+import com.comphenix.protocol.events.PacketContainer;
+import com.comphenix.protocol.events.PacketEvent;
+import com.comphenix.protocol.wrappers.WrappedChatComponent;
+import io.netty.buffer.ByteBuf;
+import org.bukkit.entity.Player;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.InetSocketAddress;
+import java.util.UUID;
+
+/**
+ * Optional packet-layer detection, only loaded when ProtocolLib is enabled.
+ *
+ * Serverbound custom payload packets are read on the netty thread in both
+ * the configuration and play phases, without copying the payload's buffer.
+ * {@link PacketInspector} decides, this class drops the packet or sends the
+ * configuration-phase disconnect.
+ */
+final class ProtocolLibInterceptor extends PacketAdapter {
+
+    private static final MethodType GETTER = MethodType.methodType(Object.class, Object.class);
+
+    /** Getters for a payload's channel id and data, resolved once per payload class. */
+    private record PayloadAccess(MethodHandle id, MethodHandle data) {
+    }
+
+    private static final PayloadAccess MISSING = new PayloadAccess(null, null);
+
+    private final ModBlocker blocker;
+    private final PacketInspector inspector;
+    private final ProtocolManager manager;
+    private final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    private final ClassValue<MethodHandle> packetPayload = new ClassValue<>() {
+        @Override
+        protected MethodHandle computeValue(Class<?> type) {
+            // ServerboundCustomPayloadPacket is a record with the payload as its only component
+            for (Field field : type.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers()) && !field.getType().isPrimitive()) {
+                    return getter(field);
+                }
+            }
+            return null;
+        }
+    };
+
+    private final ClassValue<PayloadAccess> payloadAccess = new ClassValue<>() {
+        @Override
+        protected PayloadAccess computeValue(Class<?> type) {
+            MethodHandle id = null;
+            MethodHandle data = null;
+            for (Field field : type.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers())) {
+                    continue;
+                }
+                Class<?> fieldType = field.getType();
+                String name = fieldType.getSimpleName();
+                if (id == null && (name.equals("ResourceLocation") || name.equals("MinecraftKey"))) {
+                    id = getter(field);
+                } else if (data == null && (ByteBuf.class.isAssignableFrom(fieldType)
+                        || fieldType == byte[].class || fieldType == String.class)) {
+                    data = getter(field);
+                }
+            }
+            return data == null ? MISSING : new PayloadAccess(id, data);
+        }
+    };
+
+    ProtocolLibInterceptor(ModBlocker blocker, PacketInspector inspector) {
+        super(blocker, ListenerPriority.LOWEST,
+                PacketType.Configuration.Client.CUSTOM_PAYLOAD, PacketType.Play.Client.CUSTOM_PAYLOAD);
+        this.blocker = blocker;
+        this.inspector = inspector;
+        this.manager = ProtocolLibrary.getProtocolManager();
+    }
+
+    void register() {
+        manager.addPacketListener(this);
+    }
+
+    void unregister() {
+        manager.removePacketListener(this);
+    }
+
+    @Override
+    public void onPacketReceiving(PacketEvent event) {
+        Player player = event.getPlayer();
+        if (player == null) {
+            return;
+        }
+        // A payload that cannot be read still counts towards the flood limit
+        Object packet = event.getPacket().getHandle();
+        Object payload = invoke(packetPayload.get(packet.getClass()), packet);
+        PayloadAccess access = payload != null ? payloadAccess.get(payload.getClass()) : MISSING;
+        Object id = invoke(access.id(), payload);
+        Object data = invoke(access.data(), payload);
+
+        boolean configuration = event.getPacketType() == PacketType.Configuration.Client.CUSTOM_PAYLOAD;
+        PacketInspector.Result result = inspector.inspect(configuration, addressOf(player), uuidOf(player),
+                nameOf(player), bypass(player), id != null ? id.toString() : null, data);
+        switch (result.action()) {
+            case PASS -> {
+            }
+            case DROP -> event.setCancelled(true);
+            case DISCONNECT -> {
+                event.setCancelled(true);
+                disconnect(player, result.message());
+            }
+        }
+    }
+
+    private void disconnect(Player player, String message) {
+        try {
+            PacketContainer packet = manager.createPacket(PacketType.Configuration.Server.DISCONNECT);
+            packet.getChatComponents().write(0, WrappedChatComponent.fromLegacyText(message));
+            manager.sendServerPacket(player, packet);
+        } catch (RuntimeException e) {
+            blocker.getLogger().warning("Failed to disconnect client during configuration: " + e.getMessage());
+        }
+    }
+
+    // Null if the player cannot answer, like the temporary player of the configuration phase
+    private static Boolean bypass(Player player) {
+        try {
+            return player.hasPermission("modblocker.bypass");
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    // The configuration phase only has a temporary player, which may not support these
+    private static InetSocketAddress addressOf(Player player) {
+        try {
+            return player.getAddress();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static UUID uuidOf(Player player) {
+        try {
+            return player.getUniqueId();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static String nameOf(Player player) {
+        try {
+            return player.getName();
+        } catch (RuntimeException e) {
+            return null;
+        }
+    }
+
+    private MethodHandle getter(Field field) {
+        try {
+            field.setAccessible(true);
+            return lookup.unreflectGetter(field).asType(GETTER);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    private static Object invoke(MethodHandle getter, Object target) {
+        if (getter == null) {
+            return null;
+        }
+        try {
+            return getter.invokeExact(target);
+        } catch (Throwable e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,271 @@
+package com.warakorn.modblocker;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Aho-Corasick automaton over the allowed-mod-loaders and blocked-mods lists.
+ * Patterns are lowercased once at compile time and stored as UTF-8, so every
+ * input is scanned in a single pass without allocating. ASCII case folding is
+ * baked into the byte class table.
+ */
+final class RuleMatcher {
+
+    static final int NO_MATCH = -1;
+
+    private final String[] patterns;
+    private final int allowedCount;
+    private final int[] byteClass;
+    private final int classCount;
+    private final int[] next;
+    private final int[] allowedOut;
+    private final int[] blockedOut;
+    private final long ruleHash;
+
+    private RuleMatcher(String[] patterns, int allowedCount, int[] byteClass, int classCount,
+            int[] next, int[] allowedOut, int[] blockedOut) {
+        this.patterns = patterns;
+        this.allowedCount = allowedCount;
+        this.byteClass = byteClass;
+        this.classCount = classCount;
+        this.next = next;
+        this.allowedOut = allowedOut;
+        this.blockedOut = blockedOut;
+
+        // Order-independent, so reordering the config lists keeps stored verdicts valid
+        long hash = 0;
+        for (int id = 0; id < patterns.length; id++) {
+            long pattern = ClientFingerprint.hash(patterns[id].toLowerCase(Locale.ROOT));
+            hash += ClientFingerprint.mix(id < allowedCount ? pattern : ~pattern);
+        }
+        this.ruleHash = ClientFingerprint.mix(hash + patterns.length);
+    }
+
+    static RuleMatcher compile(Collection<String> allowed, Collection<String> blocked) {
+        List<String> originals = new ArrayList<>();
+        List<byte[]> encoded = new ArrayList<>();
+        addPatterns(allowed, originals, encoded);
+        int allowedCount = originals.size();
+        addPatterns(blocked, originals, encoded);
+
+        // Map every byte that occurs in a pattern to its own class, class 0 is "anything else"
+        int[] byteClass = new int[256];
+        int classCount = 1;
+        for (byte[] pattern : encoded) {
+            for (byte b : pattern) {
+                int value = b & 0xFF;
+                if (byteClass[value] == 0) {
+                    byteClass[value] = classCount++;
+                }
+            }
+        }
+        for (int c = 'A'; c <= 'Z'; c++) {
+            byteClass[c] = byteClass[c + ('a' - 'A')];
+        }
+
+        int maxStates = 1;
+        for (byte[] pattern : encoded) {
+            maxStates += pattern.length;
+        }
+
+        // Build the trie
+        int[] next = new int[maxStates * classCount];
+        Arrays.fill(next, -1);
+        int[] allowedOut = new int[maxStates];
+        int[] blockedOut = new int[maxStates];
+        Arrays.fill(allowedOut, NO_MATCH);
+        Arrays.fill(blockedOut, NO_MATCH);
+        int states = 1;
+
+        for (int id = 0; id < encoded.size(); id++) {
+            int state = 0;
+            for (byte b : encoded.get(id)) {
+                int slot = state * classCount + byteClass[b & 0xFF];
+                if (next[slot] == -1) {
+                    next[slot] = states++;
+                }
+                state = next[slot];
+            }
+            int[] out = id < allowedCount ? allowedOut : blockedOut;
+            if (out[state] == NO_MATCH) {
+                out[state] = id;
+            }
+        }
+
+        // Breadth-first pass turns the trie into a full DFA and merges outputs along failure links
+        int[] fail = new int[states];
+        int[] queue = new int[states];
+        int head = 0;
+        int tail = 0;
+        for (int c = 0; c < classCount; c++) {
+            int child = next[c];
+            if (child == -1) {
+                next[c] = 0;
+            } else {
+                fail[child] = 0;
+                queue[tail++] = child;
+            }
+        }
+        while (head < tail) {
+            int state = queue[head++];
+            for (int c = 0; c < classCount; c++) {
+                int slot = state * classCount + c;
+                int child = next[slot];
+                int fallback = next[fail[state] * classCount + c];
+                if (child == -1) {
+                    next[slot] = fallback;
+                } else {
+                    fail[child] = fallback;
+                    if (allowedOut[child] == NO_MATCH) {
+                        allowedOut[child] = allowedOut[fallback];
+                    }
+                    if (blockedOut[child] == NO_MATCH) {
+                        blockedOut[child] = blockedOut[fallback];
+                    }
+                    queue[tail++] = child;
+                }
+            }
+        }
+
+        return new RuleMatcher(originals.toArray(new String[0]), allowedCount, byteClass, classCount,
+                Arrays.copyOf(next, states * classCount),
+                Arrays.copyOf(allowedOut, states),
+                Arrays.copyOf(blockedOut, states));
+    }
+
+    private static void addPatterns(Collection<String> rules, List<String> originals, List<byte[]> encoded) {
+        Set<String> seen = new HashSet<>();
+        for (String rule : rules) {
+            if (rule == null || rule.isEmpty()) {
+                continue;
+            }
+            String lower = rule.toLowerCase(Locale.ROOT);
+            if (seen.add(lower)) {
+                originals.add(rule);
+                encoded.add(lower.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    String pattern(int id) {
+        return patterns[id];
+    }
+
+    boolean isAllowed(int id) {
+        return id >= 0 && id < allowedCount;
+    }
+
+    int patternCount() {
+        return patterns.length;
+    }
+
+    /** Identifies the rule set, verdicts recorded under a different hash are stale. */
+    long ruleHash() {
+        return ruleHash;
+    }
+
+    /**
+     * Channel check: any allowed loader wins, otherwise the first blocked mod
+     * that completes in the input.
+     */
+    int matchChannel(CharSequence input) {
+        int blocked = NO_MATCH;
+        int state = 0;
+        for (int i = 0, length = input.length(); i < length; i++) {
+            char c = input.charAt(i);
+            if (c < 0x80) {
+                state = next[state * classCount + byteClass[c]];
+            } else {
+                int codePoint = c;
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(input.charAt(i + 1))) {
+                    codePoint = Character.toCodePoint(c, input.charAt(++i));
+                }
+                state = stepCodePoint(state, Character.toLowerCase(codePoint));
+            }
+            if (allowedOut[state] != NO_MATCH) {
+                return allowedOut[state];
+            }
+            if (blocked == NO_MATCH) {
+                blocked = blockedOut[state];
+            }
+        }
+        return blocked;
+    }
+
+    /** First blocked mod found in the input, ignoring the allowed list. */
+    int findBlocked(CharSequence input) {
+        int state = 0;
+        for (int i = 0, length = input.length(); i < length; i++) {
+            char c = input.charAt(i);
+            if (c < 0x80) {
+                state = next[state * classCount + byteClass[c]];
+            } else {
+                int codePoint = c;
+                if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(input.charAt(i + 1))) {
+                    codePoint = Character.toCodePoint(c, input.charAt(++i));
+                }
+                state = stepCodePoint(state, Character.toLowerCase(codePoint));
+            }
+            if (blockedOut[state] != NO_MATCH) {
+                return blockedOut[state];
+            }
+        }
+        return NO_MATCH;
+    }
+
+    /**
+     * First blocked mod found in {@code data[from, to)}. Only ASCII letters are
+     * folded, which covers every channel and mod id the client can send.
+     */
+    int findBlocked(byte[] data, int from, int to) {
+        int state = 0;
+        for (int i = from; i < to; i++) {
+            state = next[state * classCount + byteClass[data[i] & 0xFF]];
+            if (blockedOut[state] != NO_MATCH) {
+                return blockedOut[state];
+            }
+        }
+        return NO_MATCH;
+    }
+
+    // Stepping API for callers that feed bytes from somewhere other than an array
+
+    int next(int state, byte value) {
+        return next[state * classCount + byteClass[value & 0xFF]];
+    }
+
+    int allowedAt(int state) {
+        return allowedOut[state];
+    }
+
+    int blockedAt(int state) {
+        return blockedOut[state];
+    }
+
+    private int stepCodePoint(int state, int codePoint) {
+        if (codePoint < 0x80) {
+            return step(state, codePoint);
+        } else if (codePoint < 0x800) {
+            state = step(state, 0xC0 | (codePoint >> 6));
+            return step(state, 0x80 | (codePoint & 0x3F));
+        } else if (codePoint < 0x10000) {
+            state = step(state, 0xE0 | (codePoint >> 12));
+            state = step(state, 0x80 | ((codePoint >> 6) & 0x3F));
+            return step(state, 0x80 | (codePoint & 0x3F));
+        }
+        state = step(state, 0xF0 | (codePoint >> 18));
+        state = step(state, 0x80 | ((codePoint >> 12) & 0x3F));
+        state = step(state, 0x80 | ((codePoint >> 6) & 0x3F));
+        return step(state, 0x80 | (codePoint & 0x3F));
+    }
+
+    private int step(int state, int value) {
+        return next[state * classCount + byteClass[value]];
+    }
+}
@@ -0,0 +1,66 @@
+package com.warakorn.modblocker;
+
+import org.bukkit.ChatColor;
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Immutable view of the detection rules. Built from a config off the main
+ * thread on reload and published with one volatile write, so every check
+ * sees either the old rules or the new ones, never a mix. The fingerprint
+ * cache lives here because its verdicts are only valid for these rules.
+ */
+record RuleSnapshot(Set<String> allowedModLoaders, Set<String> blockedMods, Set<String> channels,
+        RuleMatcher matcher, FingerprintCache cache, ProbeSet probes, int maxInspectBytes,
+        boolean kickOnModDetection, boolean disconnectUnknownBypass, String kickMessage) {
+
+    static final RuleSnapshot EMPTY = new RuleSnapshot(Set.of(), Set.of(), Set.of(),
+            RuleMatcher.compile(Set.of(), Set.of()), new FingerprintCache(16), ProbeSet.EMPTY, 4096, true, false, "");
+
+    static RuleSnapshot load(ConfigurationSection config) {
+        Set<String> allowed = Set.copyOf(config.getStringList("allowed-mod-loaders"));
+        Set<String> blocked = Set.copyOf(config.getStringList("blocked-mods"));
+        Set<String> channels = new LinkedHashSet<>();
+        for (String channel : config.getStringList("detection-channels")) {
+            if (channel != null && !channel.isEmpty()) {
+                channels.add(channel);
+            }
+        }
+        ProbeSet probes = ProbeSet.of(config.getStringList("probe.channels"), config.getString("probe.brand"));
+        // Answers to probes only reach us on channels we listen on
+        for (int i = 0; i < probes.size(); i++) {
+            channels.add(probes.channel(i));
+        }
+
+        return new RuleSnapshot(allowed, blocked, Set.copyOf(channels),
+                RuleMatcher.compile(allowed, blocked),
+                new FingerprintCache(config.getInt("detection.fingerprint-cache-size", 1024)),
+                probes,
+                Math.max(0, config.getInt("payload-inspection.max-bytes", 4096)),
+                config.getBoolean("kick-on-mod-detection", true),
+                config.getBoolean("protocollib.disconnect-unknown-bypass", false),
+                ChatColor.translateAlternateColorCodes('&',
+                        config.getString("kick-message", "&cBlocked mods are not allowed on this server!")));
+    }
+
+    /**
+     * True if a client that passed {@code previous} could be blocked by these
+     * rules, either through a new blocked mod or a loader that is no longer
+     * allowed. Otherwise existing verdicts still hold.
+     */
+    boolean canBlockMoreThan(RuleSnapshot previous) {
+        return !lower(previous.blockedMods).containsAll(lower(blockedMods))
+                || !lower(allowedModLoaders).containsAll(lower(previous.allowedModLoaders));
+    }
+
+    private static Set<String> lower(Set<String> rules) {
+        Set<String> lowered = new LinkedHashSet<>();
+        for (String rule : rules) {
+            lowered.add(rule.toLowerCase(Locale.ROOT));
+        }
+        return lowered;
+    }
+}
@@ -0,0 +1,101 @@
+package com.warakorn.modblocker;
+
+import org.bukkit.ChatColor;
+import org.bukkit.command.CommandSender;
+
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * A running /modblocker scan. Works through a snapshot of the online players
+ * from the tick task within a per-tick time budget, reporting progress to
+ * the sender every few seconds. Main thread only.
+ */
+final class ScanJob {
+
+    enum Filter {
+        ALL, UNCHECKED, MODDED;
+
+        static Filter parse(String value) {
+            try {
+                return valueOf(value.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    interface Target {
+        /** Scans the player if they are online and match the filter, returns false if skipped. */
+        boolean scan(UUID uuid, Filter filter);
+    }
+
+    private static final int REPORT_TICKS = 100;
+
+    private final CommandSender sender;
+    private final Filter filter;
+    private final UUID[] players;
+    private final long budgetNanos;
+    private final long detectionsBefore;
+    private final long startNanos = System.nanoTime();
+
+    private int position;
+    private int scanned;
+    private int skipped;
+    private int ticks;
+
+    ScanJob(CommandSender sender, Filter filter, UUID[] players, long budgetNanos, long detectionsBefore) {
+        this.sender = sender;
+        this.filter = filter;
+        this.players = players;
+        this.budgetNanos = budgetNanos;
+        this.detectionsBefore = detectionsBefore;
+    }
+
+    Filter getFilter() {
+        return filter;
+    }
+
+    /** Runs one tick's share of the scan, returns true once every player was handled. */
+    boolean tick(Target target) {
+        ticks++;
+        long deadline = System.nanoTime() + budgetNanos;
+        // At least one player per tick so a tiny budget still finishes
+        do {
+            if (position >= players.length) {
+                return true;
+            }
+            if (target.scan(players[position++], filter)) {
+                scanned++;
+            } else {
+                skipped++;
+            }
+        } while (System.nanoTime() < deadline);
+
+        if (ticks % REPORT_TICKS == 0) {
+            sender.sendMessage(ChatColor.YELLOW + "[ModBlocker] Scan " + describe());
+        }
+        return position >= players.length;
+    }
+
+    String describe() {
+        int percent = players.length == 0 ? 100 : position * 100 / players.length;
+        return filter.name().toLowerCase(Locale.ROOT) + ": " + position + "/" + players.length + " (" + percent
+                + "%), " + scanned + " scanned, " + skipped + " skipped";
+    }
+
+    void finish(long detectionsAfter) {
+        long millis = (System.nanoTime() - startNanos) / 1_000_000L;
+        sender.sendMessage(ChatColor.GREEN + "[ModBlocker] Scan completed in " + ticks + " ticks (" + millis
+                + " ms): " + scanned + " scanned, " + skipped + " skipped, "
+                + (detectionsAfter - detectionsBefore) + " detections so far");
+    }
+
+    void cancel(CommandSender by) {
+        String progress = describe();
+        by.sendMessage(ChatColor.YELLOW + "[ModBlocker] Scan cancelled at " + progress);
+        if (by != sender) {
+            sender.sendMessage(ChatColor.YELLOW + "[ModBlocker] Your scan was cancelled at " + progress);
+        }
+    }
+}
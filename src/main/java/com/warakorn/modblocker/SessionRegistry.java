@@ -0,0 +1,102 @@
+package com.warakorn.modblocker;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Online player sessions. Safe to read from detection threads; entries are
+ * removed on quit so memory follows the online player count. Connections
+ * still in the configuration phase are kept apart, keyed by remote address,
+ * until they join, together with the bypass permission from their login.
+ */
+final class SessionRegistry {
+
+    // Configuration takes seconds even with a resource pack, older connections never joined
+    private static final long ABANDONED_NANOS = TimeUnit.MINUTES.toNanos(5);
+
+    private final Map<UUID, PlayerSession> sessions = new ConcurrentHashMap<>();
+    private final Map<InetSocketAddress, PlayerSession> connecting = new ConcurrentHashMap<>();
+    // The login event only knows the address without the port
+    private final Map<InetAddress, Login> logins = new ConcurrentHashMap<>();
+
+    private record Login(boolean bypass, long nanos) {
+    }
+
+    /** Fresh session for a join, replacing anything left from an earlier login. */
+    PlayerSession start(UUID uuid, String name) {
+        PlayerSession session = new PlayerSession(uuid, name);
+        sessions.put(uuid, session);
+        return session;
+    }
+
+    PlayerSession getOrCreate(UUID uuid, String name) {
+        // Plain get first, the capturing lambda would be allocated on every call
+        PlayerSession session = sessions.get(uuid);
+        return session != null ? session : sessions.computeIfAbsent(uuid, id -> new PlayerSession(id, name));
+    }
+
+    /** Session for a connection in the configuration phase, which may not have a UUID yet. */
+    PlayerSession connecting(InetSocketAddress address, UUID uuid, String name) {
+        PlayerSession session = connecting.get(address);
+        return session != null ? session : connecting.computeIfAbsent(address, key -> new PlayerSession(uuid, name));
+    }
+
+    /** Bypass permission of a login, kept for its configuration phase. Players behind one address share it. */
+    void login(InetAddress address, boolean bypass) {
+        logins.merge(address, new Login(bypass, System.nanoTime()),
+                (old, login) -> new Login(old.bypass() || login.bypass(), login.nanos()));
+    }
+
+    /** Bypass permission from the login of a configuration-phase connection, null if the login was not seen. */
+    Boolean loginBypass(InetSocketAddress address) {
+        Login login = address != null ? logins.get(address.getAddress()) : null;
+        return login != null ? login.bypass() : null;
+    }
+
+    /** Removes and returns the configuration-phase session of a connection that just joined. */
+    PlayerSession joined(InetSocketAddress address) {
+        if (address == null) {
+            return null;
+        }
+        logins.remove(address.getAddress());
+        return connecting.remove(address);
+    }
+
+    PlayerSession get(UUID uuid) {
+        return sessions.get(uuid);
+    }
+
+    PlayerSession remove(UUID uuid) {
+        return sessions.remove(uuid);
+    }
+
+    /** Drops sessions whose player is no longer online, in case a quit event was missed, and abandoned connections. */
+    int retain(Predicate<UUID> online) {
+        int before = sessions.size();
+        sessions.keySet().removeIf(online.negate());
+        long now = System.nanoTime();
+        connecting.values().removeIf(session -> now - session.getStartedNanos() > ABANDONED_NANOS);
+        logins.values().removeIf(login -> now - login.nanos() > ABANDONED_NANOS);
+        return before - sessions.size();
+    }
+
+    Collection<PlayerSession> all() {
+        return sessions.values();
+    }
+
+    int size() {
+        return sessions.size();
+    }
+
+    void clear() {
+        sessions.clear();
+        connecting.clear();
+        logins.clear();
+    }
+}
@@ -0,0 +1,22 @@
+package com.warakorn.modblocker;
+
+import java.util.UUID;
+
+/**
+ * Result of a detection that should end in a kick. {@code rule} is the
+ * blocked-mods entry that matched, {@code reason} is what the player sees.
+ * {@code client} is true if the verdict comes from the client's channels,
+ * brand or payload and may be stored; behavior and flood kicks are about
+ * one session only.
+ */
+record Verdict(UUID uuid, String rule, String reason, boolean client) {
+
+    /** Rule names of behavior and flood kicks in stats and the detection log. */
+    static final String BEHAVIOR = "behavior";
+    static final String FLOOD = "flood";
+
+    /** The same verdict for another player, e.g. the session a connection joins as. */
+    Verdict forPlayer(UUID player) {
+        return new Verdict(player, rule, reason, client);
+    }
+}
@@ -0,0 +1,665 @@
+package com.warakorn.modblocker;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * On-disk verdicts keyed by player UUID, so a rejoin with an unchanged client
+ * is resolved with one lookup instead of the delayed join stages.
+ *
+ * Records are appended to verdicts.log; verdicts.N.idx is a memory-mapped
+ * open-addressing table from UUID to the latest record. Growth and
+ * compaction write the next generation N and switch to it, since a mapped
+ * file cannot be replaced on Windows; older generations are deleted when
+ * possible and otherwise on the next open. Appends, index growth and
+ * compaction run on one background thread. Lookups take no lock: they read
+ * the published table, retry if the writer changed a slot meanwhile, and
+ * never touch the disk.
+ */
+final class VerdictStore {
+
+    enum Outcome {
+        CLEAN, MODDED, BLOCKED
+    }
+
+    /** {@code rule} and {@code reason} are only set for blocked verdicts. */
+    record Entry(long fingerprint, long ruleHash, long timestamp, Outcome outcome, String rule, String reason) {
+    }
+
+    // Matched rule and kick reason of a blocked verdict
+    private record Kick(String rule, String reason) {
+    }
+
+    // What lookups read, replaced whenever the writer switches tables
+    private record View(MappedByteBuffer index, int capacity, Map<UUID, Kick> kicks) {
+    }
+
+    private static final Outcome[] OUTCOMES = Outcome.values();
+    private static final int LOG_MAGIC = 0x4D42564C; // MBVL
+    private static final int INDEX_MAGIC = 0x4D425649; // MBVI
+    private static final int LOG_VERSION = 2;
+    private static final int LOG_HEADER = 8;
+    private static final int INDEX_HEADER = 64;
+    private static final int SLOT = 48;
+    private static final int MIN_CAPACITY = 1024;
+    private static final int MAX_REASON = 256;
+    // msb, lsb, fingerprint, ruleHash, timestamp, outcome, rule length, reason length
+    private static final int RECORD_BODY = 5 * 8 + 1 + 2 + 2;
+    private static final int COMPACT_MIN_RECORDS = 4096;
+
+    // Index header fields
+    private static final int H_CAPACITY = 4;
+    private static final int H_SIZE = 8;
+    private static final int H_LOG_END = 16;
+    private static final int H_RECORDS = 24;
+
+    private final Path directory;
+    private final Path logPath;
+    private final Logger logger;
+    private final ExecutorService writer;
+
+    private volatile long maxAgeMillis;
+    private volatile View view;
+    // Odd while the writer changes a slot of the published table
+    private volatile long version;
+
+    // Guarded by this
+    private FileChannel log;
+    private MappedByteBuffer index;
+    private long generation = -1;
+    // Blocked verdicts' rules and reasons, so lookups never read the log
+    private Map<UUID, Kick> kicks = new ConcurrentHashMap<>();
+    private int capacity;
+    private int size;
+    private long logEnd;
+    private long records;
+
+    VerdictStore(File directory, Logger logger) {
+        this.directory = directory.toPath();
+        this.logPath = this.directory.resolve("verdicts.log");
+        this.logger = logger;
+        this.writer = Executors.newSingleThreadExecutor(task -> {
+            Thread thread = new Thread(task, "ModBlocker-VerdictStore");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    void configure(long maxAgeMillis) {
+        this.maxAgeMillis = maxAgeMillis;
+    }
+
+    /** Maps the index, replaying log records it has not seen yet. Rebuilds it from the log if it is unusable. */
+    synchronized void open() throws IOException {
+        Files.createDirectories(directory);
+        log = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (log.size() < LOG_HEADER || readInt(log, 0) != LOG_MAGIC || readInt(log, 4) != LOG_VERSION) {
+            if (log.size() > 0) {
+                logger.warning("Verdict log is not recognised, starting a new one");
+            }
+            log.truncate(0);
+            ByteBuffer header = ByteBuffer.allocate(LOG_HEADER).putInt(LOG_MAGIC).putInt(LOG_VERSION).flip();
+            log.write(header, 0);
+        }
+
+        // Only the newest generation can match the log, anything older is left over
+        generation = latestGeneration();
+        if (generation >= 0 && mapExistingIndex(indexPath(generation))) {
+            loadKicks();
+        } else {
+            generation++;
+            capacity = MIN_CAPACITY;
+            index = mapIndex(indexPath(generation), capacity);
+            kicks = new ConcurrentHashMap<>();
+            size = 0;
+            records = 0;
+            logEnd = LOG_HEADER;
+        }
+        deleteIndexesBefore(generation);
+        replay();
+        publish();
+    }
+
+    int size() {
+        synchronized (this) {
+            return size;
+        }
+    }
+
+    /** Latest verdict for the player, or null if there is none, it has expired or its slot is unreadable. */
+    Entry lookup(UUID uuid) {
+        while (true) {
+            long before = version;
+            View current = view;
+            if (current == null) {
+                return null;
+            }
+            if ((before & 1) == 0) {
+                Entry entry = read(current, uuid);
+                // The slot reads must not move past the version check
+                VarHandle.acquireFence();
+                if (version == before) {
+                    return entry;
+                }
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /** Queues a verdict for the background writer. */
+    void record(UUID uuid, long fingerprint, long ruleHash, Outcome outcome, String rule, String reason) {
+        long now = System.currentTimeMillis();
+        try {
+            writer.execute(() -> append(uuid, fingerprint, ruleHash, now, outcome, rule, reason));
+        } catch (RuntimeException e) {
+            // Store is closing
+        }
+    }
+
+    void close() {
+        writer.shutdown();
+        try {
+            writer.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            try {
+                if (index != null) {
+                    index.force();
+                }
+                if (log != null) {
+                    log.close();
+                }
+            } catch (IOException e) {
+                logger.warning("Failed to close verdict store: " + e.getMessage());
+            }
+            index = null;
+            log = null;
+            publish();
+        }
+    }
+
+    private Entry read(View current, UUID uuid) {
+        int slot = find(current.index(), current.capacity(), uuid.getMostSignificantBits(),
+                uuid.getLeastSignificantBits());
+        if (slot < 0) {
+            return null;
+        }
+        int base = INDEX_HEADER + slot * SLOT;
+        long timestamp = current.index().getLong(base + 32);
+        if (maxAgeMillis > 0 && System.currentTimeMillis() - timestamp > maxAgeMillis) {
+            return null;
+        }
+        Outcome outcome = outcome(current.index().getLong(base + 40));
+        if (outcome == null) {
+            return null;
+        }
+        // Only blocked verdicts need the rule and kick reason
+        Kick kick = outcome == Outcome.BLOCKED ? current.kicks().get(uuid) : null;
+        return new Entry(current.index().getLong(base + 16), current.index().getLong(base + 24), timestamp, outcome,
+                kick != null ? kick.rule() : null, kick != null ? kick.reason() : null);
+    }
+
+    // Writer thread
+
+    private void append(UUID uuid, long fingerprint, long ruleHash, long timestamp, Outcome outcome, String rule,
+            String reason) {
+        try {
+            ByteBuffer record = encode(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(),
+                    fingerprint, ruleHash, timestamp, outcome, rule, reason);
+            // Only this thread moves logEnd or swaps the log, so the write itself needs no lock
+            FileChannel channel;
+            long offset;
+            synchronized (this) {
+                channel = log;
+                offset = logEnd;
+            }
+            if (channel == null) {
+                return;
+            }
+            int length = record.remaining();
+            while (record.hasRemaining()) {
+                channel.write(record, offset + record.position());
+            }
+
+            boolean compact;
+            synchronized (this) {
+                if (log == null) {
+                    return;
+                }
+                put(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), fingerprint, ruleHash,
+                        timestamp, outcome, rule, reason, offset);
+                logEnd = offset + length;
+                records++;
+                writeHeader();
+                compact = records > COMPACT_MIN_RECORDS && records > 2L * size;
+            }
+            if (compact) {
+                compact();
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to store verdict: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Rewrites the log with only the live, unexpired records into the next
+     * index generation. The copy is made outside the lock; appends cannot
+     * interleave because they run on this same thread.
+     */
+    private void compact() throws IOException {
+        long[] slots;
+        Map<UUID, Kick> liveKicks;
+        int live;
+        long next;
+        synchronized (this) {
+            slots = new long[capacity * 6];
+            liveKicks = new HashMap<>(kicks);
+            live = 0;
+            for (int slot = 0; slot < capacity; slot++) {
+                int base = INDEX_HEADER + slot * SLOT;
+                long msb = index.getLong(base);
+                long lsb = index.getLong(base + 8);
+                if (msb == 0 && lsb == 0) {
+                    continue;
+                }
+                for (int field = 0; field < 6; field++) {
+                    slots[live * 6 + field] = index.getLong(base + field * 8);
+                }
+                live++;
+            }
+            next = generation + 1;
+        }
+
+        long now = System.currentTimeMillis();
+        Path logTemp = logPath.resolveSibling("verdicts.log.tmp");
+        int newCapacity = capacityFor(live);
+        MappedByteBuffer newIndex = mapIndex(indexPath(next), newCapacity);
+        Map<UUID, Kick> newKicks = new ConcurrentHashMap<>();
+        int newSize = 0;
+        long newEnd = LOG_HEADER;
+
+        try (FileChannel out = FileChannel.open(logTemp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            out.write(ByteBuffer.allocate(LOG_HEADER).putInt(LOG_MAGIC).putInt(LOG_VERSION).flip(), 0);
+            for (int i = 0; i < live; i++) {
+                long timestamp = slots[i * 6 + 4];
+                Outcome outcome = outcome(slots[i * 6 + 5]);
+                if (outcome == null || (maxAgeMillis > 0 && now - timestamp > maxAgeMillis)) {
+                    continue;
+                }
+                Kick kick = null;
+                if (outcome == Outcome.BLOCKED) {
+                    UUID uuid = new UUID(slots[i * 6], slots[i * 6 + 1]);
+                    kick = liveKicks.getOrDefault(uuid, new Kick(null, null));
+                    newKicks.put(uuid, kick);
+                }
+                ByteBuffer record = encode(slots[i * 6], slots[i * 6 + 1], slots[i * 6 + 2], slots[i * 6 + 3],
+                        timestamp, outcome, kick != null ? kick.rule() : null, kick != null ? kick.reason() : null);
+                int length = record.remaining();
+                while (record.hasRemaining()) {
+                    out.write(record, newEnd + record.position());
+                }
+                insert(newIndex, newCapacity, slots[i * 6], slots[i * 6 + 1], slots[i * 6 + 2], slots[i * 6 + 3],
+                        timestamp, outcome, newEnd);
+                newEnd += length;
+                newSize++;
+            }
+            out.force(true);
+        }
+        // The log end is written last, until then a crash leaves an index that open() rebuilds from the log
+        newIndex.putInt(H_CAPACITY, newCapacity);
+        newIndex.putInt(H_SIZE, newSize);
+        newIndex.putLong(H_RECORDS, newSize);
+        newIndex.force();
+
+        synchronized (this) {
+            if (log == null) {
+                return;
+            }
+            // The log is never mapped, so it can be replaced once closed
+            log.close();
+            try {
+                Files.move(logTemp, logPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                // Keep appending to the old log and index, the next compaction tries again
+                log = null;
+                try {
+                    log = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                } catch (IOException reopen) {
+                    e.addSuppressed(reopen);
+                }
+                throw e;
+            }
+            log = FileChannel.open(logPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            newIndex.putLong(H_LOG_END, newEnd);
+            newIndex.force();
+            index = newIndex;
+            generation = next;
+            kicks = newKicks;
+            capacity = newCapacity;
+            size = newSize;
+            logEnd = newEnd;
+            records = newSize;
+            publish();
+        }
+        deleteIndexesBefore(next);
+        logger.info("Compacted verdict store to " + newSize + " records");
+    }
+
+    // Index, callers hold the lock
+
+    private boolean mapExistingIndex(Path indexPath) throws IOException {
+        try (FileChannel channel = FileChannel.open(indexPath, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < INDEX_HEADER || readInt(channel, 0) != INDEX_MAGIC) {
+                return false;
+            }
+            int mappedCapacity = readInt(channel, H_CAPACITY);
+            if (mappedCapacity < MIN_CAPACITY || Integer.bitCount(mappedCapacity) != 1
+                    || channel.size() != INDEX_HEADER + (long) mappedCapacity * SLOT) {
+                return false;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            long mappedEnd = mapped.getLong(H_LOG_END);
+            if (mappedEnd < LOG_HEADER || mappedEnd > log.size()) {
+                // Log was truncated or replaced behind the index's back
+                return false;
+            }
+            index = mapped;
+            capacity = mappedCapacity;
+            size = mapped.getInt(H_SIZE);
+            logEnd = mappedEnd;
+            records = mapped.getLong(H_RECORDS);
+            return true;
+        }
+    }
+
+    /** Indexes records past logEnd, dropping a torn tail left by a crash. */
+    private void replay() throws IOException {
+        long end = log.size();
+        ByteBuffer lengthBuffer = ByteBuffer.allocate(4);
+        while (logEnd + 4 <= end) {
+            lengthBuffer.clear();
+            log.read(lengthBuffer, logEnd);
+            int length = lengthBuffer.getInt(0);
+            if (length < RECORD_BODY || length > RECORD_BODY + 2 * MAX_REASON || logEnd + 8 + length > end) {
+                break;
+            }
+            ByteBuffer body = ByteBuffer.allocate(length + 4);
+            log.read(body, logEnd + 4);
+            CRC32 crc = new CRC32();
+            crc.update(body.array(), 0, length);
+            if ((int) crc.getValue() != body.getInt(length)) {
+                break;
+            }
+            Outcome outcome = outcome(body.get(40));
+            int ruleLength = body.getShort(RECORD_BODY - 4) & 0xFFFF;
+            int reasonLength = body.getShort(RECORD_BODY - 2) & 0xFFFF;
+            if (outcome == null || RECORD_BODY + ruleLength + reasonLength != length) {
+                break;
+            }
+            String rule = new String(body.array(), RECORD_BODY, ruleLength, StandardCharsets.UTF_8);
+            String reason = new String(body.array(), RECORD_BODY + ruleLength, reasonLength, StandardCharsets.UTF_8);
+            put(body.getLong(0), body.getLong(8), body.getLong(16), body.getLong(24), body.getLong(32),
+                    outcome, rule, reason, logEnd);
+            logEnd += 8 + length;
+            records++;
+        }
+        if (logEnd < end) {
+            logger.warning("Dropping " + (end - logEnd) + " unreadable bytes at the end of the verdict log");
+            log.truncate(logEnd);
+        }
+        writeHeader();
+    }
+
+    private void put(long msb, long lsb, long fingerprint, long ruleHash, long timestamp, Outcome outcome,
+            String rule, String reason, long offset) throws IOException {
+        if (find(index, capacity, msb, lsb) < 0) {
+            if ((size + 1) * 2L > capacity) {
+                grow();
+            }
+            size++;
+        }
+        // Lookups that overlap the odd version retry
+        version++;
+        VarHandle.storeStoreFence();
+        insert(index, capacity, msb, lsb, fingerprint, ruleHash, timestamp, outcome, offset);
+        if (outcome == Outcome.BLOCKED) {
+            kicks.put(new UUID(msb, lsb), new Kick(rule, reason));
+        } else if (!kicks.isEmpty()) {
+            kicks.remove(new UUID(msb, lsb));
+        }
+        version++;
+    }
+
+    // The grown table goes to the next generation, the mapped one stays in place until it can be deleted
+    private void grow() throws IOException {
+        int newCapacity = capacity * 2;
+        MappedByteBuffer grown = mapIndex(indexPath(generation + 1), newCapacity);
+        for (int slot = 0; slot < capacity; slot++) {
+            int base = INDEX_HEADER + slot * SLOT;
+            long msb = index.getLong(base);
+            long lsb = index.getLong(base + 8);
+            if (msb == 0 && lsb == 0) {
+                continue;
+            }
+            long meta = index.getLong(base + 40);
+            Outcome outcome = outcome(meta);
+            if (outcome == null) {
+                // Corrupt slot, dropped like a missing one
+                size--;
+                continue;
+            }
+            insert(grown, newCapacity, msb, lsb, index.getLong(base + 16), index.getLong(base + 24),
+                    index.getLong(base + 32), outcome, meta >>> 8);
+        }
+        index = grown;
+        capacity = newCapacity;
+        generation++;
+        writeHeader();
+        publish();
+        deleteIndexesBefore(generation);
+    }
+
+    private void publish() {
+        view = index != null ? new View(index, capacity, kicks) : null;
+    }
+
+    private static int find(MappedByteBuffer index, int capacity, long msb, long lsb) {
+        int mask = capacity - 1;
+        int slot = (int) ClientFingerprint.mix(msb ^ lsb) & mask;
+        while (true) {
+            int base = INDEX_HEADER + slot * SLOT;
+            long slotMsb = index.getLong(base);
+            long slotLsb = index.getLong(base + 8);
+            if (slotMsb == msb && slotLsb == lsb) {
+                return slot;
+            }
+            if (slotMsb == 0 && slotLsb == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static void insert(MappedByteBuffer target, int targetCapacity, long msb, long lsb, long fingerprint,
+            long ruleHash, long timestamp, Outcome outcome, long offset) {
+        int mask = targetCapacity - 1;
+        int slot = (int) ClientFingerprint.mix(msb ^ lsb) & mask;
+        while (true) {
+            int base = INDEX_HEADER + slot * SLOT;
+            long slotMsb = target.getLong(base);
+            long slotLsb = target.getLong(base + 8);
+            if ((slotMsb == 0 && slotLsb == 0) || (slotMsb == msb && slotLsb == lsb)) {
+                target.putLong(base, msb);
+                target.putLong(base + 8, lsb);
+                target.putLong(base + 16, fingerprint);
+                target.putLong(base + 24, ruleHash);
+                target.putLong(base + 32, timestamp);
+                target.putLong(base + 40, offset << 8 | outcome.ordinal());
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void writeHeader() {
+        index.putInt(0, INDEX_MAGIC);
+        index.putInt(H_CAPACITY, capacity);
+        index.putInt(H_SIZE, size);
+        index.putLong(H_LOG_END, logEnd);
+        index.putLong(H_RECORDS, records);
+    }
+
+    // Blocked verdicts already in the index when it was mapped, the log is only read here
+    private void loadKicks() {
+        kicks = new ConcurrentHashMap<>();
+        for (int slot = 0; slot < capacity; slot++) {
+            int base = INDEX_HEADER + slot * SLOT;
+            long meta = index.getLong(base + 40);
+            long msb = index.getLong(base);
+            long lsb = index.getLong(base + 8);
+            if ((msb != 0 || lsb != 0) && outcome(meta) == Outcome.BLOCKED) {
+                kicks.put(new UUID(msb, lsb), readKick(meta >>> 8));
+            }
+        }
+    }
+
+    // Corrupt slots and records are treated as missing
+    private static Outcome outcome(long meta) {
+        int ordinal = (int) (meta & 0xFF);
+        return ordinal < OUTCOMES.length ? OUTCOMES[ordinal] : null;
+    }
+
+    private Path indexPath(long generation) {
+        return directory.resolve("verdicts." + generation + ".idx");
+    }
+
+    private long latestGeneration() throws IOException {
+        long latest = -1;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "verdicts.*.idx")) {
+            for (Path file : files) {
+                latest = Math.max(latest, generationOf(file));
+            }
+        }
+        return latest;
+    }
+
+    // A mapped index cannot be deleted on Windows, that one is retried on the next open
+    private void deleteIndexesBefore(long current) {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "verdicts.*.idx")) {
+            for (Path file : files) {
+                long fileGeneration = generationOf(file);
+                if (fileGeneration >= 0 && fileGeneration < current) {
+                    try {
+                        Files.deleteIfExists(file);
+                    } catch (IOException e) {
+                        // Still mapped
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warning("Failed to clean up old verdict indexes: " + e.getMessage());
+        }
+    }
+
+    private static long generationOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring("verdicts.".length(), name.length() - ".idx".length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    private Kick readKick(long offset) {
+        try {
+            ByteBuffer lengths = ByteBuffer.allocate(4);
+            log.read(lengths, offset + 4 + RECORD_BODY - 4);
+            int ruleLength = lengths.getShort(0) & 0xFFFF;
+            int reasonLength = lengths.getShort(2) & 0xFFFF;
+            ByteBuffer text = ByteBuffer.allocate(ruleLength + reasonLength);
+            log.read(text, offset + 4 + RECORD_BODY);
+            if (text.hasRemaining()) {
+                return new Kick(null, null);
+            }
+            return new Kick(new String(text.array(), 0, ruleLength, StandardCharsets.UTF_8),
+                    new String(text.array(), ruleLength, reasonLength, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            return new Kick(null, null);
+        }
+    }
+
+    private static ByteBuffer encode(long msb, long lsb, long fingerprint, long ruleHash, long timestamp,
+            Outcome outcome, String rule, String reason) {
+        byte[] ruleText = truncate(rule);
+        byte[] reasonText = truncate(reason);
+        int length = RECORD_BODY + ruleText.length + reasonText.length;
+        ByteBuffer buffer = ByteBuffer.allocate(4 + length + 4);
+        buffer.putInt(length);
+        buffer.putLong(msb).putLong(lsb).putLong(fingerprint).putLong(ruleHash).putLong(timestamp);
+        buffer.put((byte) outcome.ordinal());
+        buffer.putShort((short) ruleText.length);
+        buffer.putShort((short) reasonText.length);
+        buffer.put(ruleText);
+        buffer.put(reasonText);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, length);
+        buffer.putInt((int) crc.getValue());
+        return buffer.flip();
+    }
+
+    private static byte[] truncate(String text) {
+        if (text == null) {
+            return new byte[0];
+        }
+        byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        return bytes.length <= MAX_REASON ? bytes : Arrays.copyOf(bytes, MAX_REASON);
+    }
+
+    private static MappedByteBuffer mapIndex(Path path, int slots) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, 0,
+                    INDEX_HEADER + (long) slots * SLOT);
+            mapped.putInt(0, INDEX_MAGIC);
+            mapped.putInt(H_CAPACITY, slots);
+            return mapped;
+        }
+    }
+
+    private static int capacityFor(int live) {
+        int wanted = MIN_CAPACITY;
+        while (wanted < live * 2L) {
+            wanted <<= 1;
+        }
+        return wanted;
+    }
+
+    private static int readInt(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4);
+        channel.read(buffer, position);
+        return buffer.position() == 4 ? buffer.getInt(0) : 0;
+    }
+}
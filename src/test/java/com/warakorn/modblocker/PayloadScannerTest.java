@@ -0,0 +1,63 @@
+package com.warakorn.modblocker;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class PayloadScannerTest {
+
+    private static final RuleMatcher RULES = RuleMatcher.compile(List.of(), List.of("baritone"));
+
+    @Test
+    void emptyStringIsFramed() {
+        byte[] data = framed("");
+        assertTrue(PayloadScanner.isFramed(data, 0, data.length, data.length));
+    }
+
+    @Test
+    void emptyStringBetweenStringsIsFramed() {
+        byte[] data = framed("fabric", "", "sodium");
+        assertTrue(PayloadScanner.isFramed(data, 0, data.length, data.length));
+    }
+
+    @Test
+    void negativeLengthIsNotFramed() {
+        // Five-byte VarInt of -1
+        byte[] data = {(byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x0F, 'a'};
+        assertFalse(PayloadScanner.isFramed(data, 0, data.length, data.length));
+    }
+
+    @Test
+    void overrunningLengthIsNotFramed() {
+        byte[] data = {5, 'a', 'b'};
+        assertFalse(PayloadScanner.isFramed(data, 0, data.length, data.length));
+    }
+
+    @Test
+    void stringCutOffByLimitIsFramed() {
+        byte[] data = framed("abc");
+        assertTrue(PayloadScanner.isFramed(data, 0, 2, data.length));
+    }
+
+    @Test
+    void scanFindsBlockedModAfterEmptyString() {
+        byte[] data = framed("", "baritone");
+        assertEquals("baritone", RULES.pattern(PayloadScanner.scan(RULES, data, data.length)));
+    }
+
+    private static byte[] framed(String... strings) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (String string : strings) {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            out.write(bytes.length); // Every test string is shorter than 128 bytes
+            out.writeBytes(bytes);
+        }
+        return out.toByteArray();
+    }
+}